@@ -0,0 +1,244 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import javax.sound.midi.MidiSystem;
+
+import freedots.braille.BrailleEncoding;
+import freedots.musicxml.MIDISequence;
+import freedots.musicxml.Score;
+import freedots.transcription.Transcriber;
+
+/**
+ * Converts many scores in one process.
+ * <p>
+ * Every location given on the command-line is either a score (file or URL),
+ * a directory whose MusicXML files are converted, a file name pattern with
+ * {@code *} and {@code ?} in its last component, or a list file prefixed
+ * with {@code @} that names one location per line.  The braille of each
+ * score, and its MIDI rendering if requested, is written to the batch
+ * directory.  A report with the time taken for every file and the reason
+ * for every failure is written there as well.
+ */
+final class Batch {
+  private static final String REPORT_NAME = "report";
+  private static final String REPORT = REPORT_NAME + ".txt";
+
+  private final Options options;
+  private final File directory;
+  private final BrailleEncoding encoding;
+
+  Batch(final Options options) {
+    this.options = options;
+    this.directory = options.getBatchDirectory();
+    this.encoding = options.getEncoding();
+  }
+
+  /** Converts all scores and writes the report.
+   * @return the number of scores which could not be converted
+   */
+  int run() throws IOException, InterruptedException {
+    final List<String> inputs = new ArrayList<String>();
+    for (String location: options.getLocations()) expand(location, inputs);
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Unable to create " + directory);
+
+    /* Every file already keeps a processor busy */
+    if (options.getJobs() > 1) options.setParallelTranscription(false);
+    final ExecutorService pool =
+      Executors.newFixedThreadPool(Math.min(options.getJobs(),
+                                            Math.max(1, inputs.size())));
+    final List<Future<Long>> results = new ArrayList<Future<Long>>();
+    final List<String> outputs = new ArrayList<String>();
+    final Set<String> names = new HashSet<String>();
+    /* Keeps the report from overwriting the braille of a score called report */
+    names.add(REPORT_NAME);
+    final long start = System.nanoTime();
+    for (final String input: inputs) {
+      final String name = outputName(input, names);
+      outputs.add(name + "." + encoding.getExtension());
+      results.add(pool.submit(new Callable<Long>() {
+          public Long call() throws Exception {
+            final long begin = System.nanoTime();
+            convert(input, name);
+            return System.nanoTime() - begin;
+          }
+        }));
+    }
+    pool.shutdown();
+
+    int failures = 0;
+    final PrintWriter report = new PrintWriter(new OutputStreamWriter(
+      new FileOutputStream(new File(directory, REPORT)), "UTF-8"));
+    try {
+      for (int i = 0; i < inputs.size(); i++) {
+        try {
+          final long nanoseconds = results.get(i).get();
+          report.println("OK\t" + nanoseconds / 1000000 + " ms\t"
+                         + inputs.get(i) + "\t" + outputs.get(i));
+        } catch (ExecutionException e) {
+          /* One line per score, whatever the message looks like */
+          final String cause =
+            String.valueOf(e.getCause()).replaceAll("\\s*\n\\s*", " ");
+          failures += 1;
+          report.println("FAILED\t\t" + inputs.get(i) + "\t" + cause);
+          System.err.println(inputs.get(i) + ": " + cause);
+        }
+      }
+    } finally {
+      report.close();
+    }
+    System.err.println("Converted " + (inputs.size() - failures) + " of "
+                       + inputs.size() + " scores in "
+                       + (System.nanoTime() - start) / 1000000 + " ms, see "
+                       + new File(directory, REPORT));
+    return failures;
+  }
+  private void convert(final String input, final String name)
+    throws Exception {
+    final Score score = new Score(input, false);
+    final Transcriber transcriber = new Transcriber(options);
+    final File output =
+      new File(directory, name + "." + encoding.getExtension());
+    final File midi =
+      options.getExportMidi()? new File(directory, name + ".mid"): null;
+    boolean complete = false;
+    try {
+      final Writer writer =
+        new OutputStreamWriter(new FileOutputStream(output), "UTF-8");
+      try {
+        transcriber.setScore(score, writer, encoding);
+      } finally {
+        writer.close();
+      }
+      if (midi != null) {
+        final OutputStream stream = new FileOutputStream(midi);
+        try {
+          MidiSystem.write(new MIDISequence(score), 1, stream);
+        } finally {
+          stream.close();
+        }
+      }
+      complete = true;
+    } finally {
+      /* A failed score leaves none of its outputs behind */
+      if (!complete) {
+        output.delete();
+        if (midi != null) midi.delete();
+      }
+    }
+  }
+
+  /** Derives a unique output file name (without extension) from the
+   *  name of a score.
+   */
+  static String outputName(final String input,
+                           final Set<String> names) {
+    String name = input.substring(Math.max(input.lastIndexOf('/'),
+                                           input.lastIndexOf('\\')) + 1);
+    final int dot = name.lastIndexOf('.');
+    if (dot > 0) name = name.substring(0, dot);
+    if (name.length() == 0) name = "score";
+    String unique = name;
+    for (int count = 2; !names.add(unique); count++)
+      unique = name + "-" + count;
+    return unique;
+  }
+
+  private static boolean isScore(final String name) {
+    final String lowerCase = name.toLowerCase();
+    return lowerCase.endsWith(".xml") || lowerCase.endsWith(".mxl");
+  }
+
+  /** Adds the scores a location stands for to inputs. */
+  static void expand(final String location, final List<String> inputs)
+    throws IOException {
+    if (location.startsWith("@")) {
+      final BufferedReader reader = new BufferedReader(new InputStreamReader(
+        new FileInputStream(location.substring(1)), "UTF-8"));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0 && !line.startsWith("#"))
+            expand(line, inputs);
+        }
+      } finally {
+        reader.close();
+      }
+      return;
+    }
+    final File file = new File(location);
+    if (file.isDirectory()) {
+      final String[] names = file.list();
+      Arrays.sort(names);
+      for (String name: names) {
+        if (isScore(name) && new File(file, name).isFile())
+          inputs.add(new File(file, name).getPath());
+      }
+    } else if (!file.exists() && file.getName().matches(".*[*?].*")) {
+      final File parent = file.getAbsoluteFile().getParentFile();
+      final Pattern pattern = glob(file.getName());
+      final String[] names = parent.list();
+      if (names == null) return;
+      Arrays.sort(names);
+      for (String name: names) {
+        if (pattern.matcher(name).matches())
+          inputs.add(new File(file.getParentFile(), name).getPath());
+      }
+    } else {
+      inputs.add(location);
+    }
+  }
+  private static Pattern glob(final String glob) {
+    final StringBuilder regex = new StringBuilder();
+    for (char c: glob.toCharArray()) {
+      if (c == '*') regex.append(".*");
+      else if (c == '?') regex.append('.');
+      else regex.append(Pattern.quote(String.valueOf(c)));
+    }
+    return Pattern.compile(regex.toString());
+  }
+}
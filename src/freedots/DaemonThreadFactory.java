@@ -0,0 +1,60 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/** Creates numbered daemon threads for the pools of FreeDots.
+ * <p>
+ * Daemon threads keep an idle pool from holding up the exit of the
+ * virtual machine.
+ */
+public final class DaemonThreadFactory implements ThreadFactory {
+  private final String prefix;
+  private int count = 0;
+
+  /**
+   * @param name identifies the pool in the names of its threads
+   */
+  public DaemonThreadFactory(final String name) {
+    prefix = "freedots-" + name + "-";
+  }
+
+  public synchronized Thread newThread(final Runnable runnable) {
+    final Thread thread = new Thread(runnable, prefix + ++count);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /** Creates a pool with a fixed number of daemon threads.
+   * @param threads is the number of threads in the pool
+   * @param name identifies the pool in the names of its threads
+   */
+  public static ExecutorService newFixedThreadPool(final int threads,
+                                                   final String name) {
+    return Executors.newFixedThreadPool(threads,
+                                        new DaemonThreadFactory(name));
+  }
+}
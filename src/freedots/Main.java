@@ -26,6 +26,8 @@ import java.awt.HeadlessException;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.reflect.Constructor;
 import java.net.MalformedURLException;
 import java.util.logging.Logger;
@@ -36,6 +38,7 @@ import javax.sound.midi.InvalidMidiDataException;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.xpath.XPathExpressionException;
 
+import freedots.braille.BrailleEncoding;
 import freedots.gui.GraphicalUserInterface;
 import freedots.musicxml.MIDISequence;
 import freedots.musicxml.Score;
@@ -66,12 +69,33 @@ public final class Main {
     } catch (FileNotFoundException exception) {
       System.err.println("File not found: "+exception.getMessage());
       System.exit(1);
+    } catch (IllegalArgumentException exception) {
+      /* A malformed number or encoding, or misplaced locations */
+      printUsage();
+      System.exit(1);
+    }
+    if (options.getBatchDirectory() != null) {
+      if (options.getLocations().isEmpty()) {
+        printUsage();
+        System.exit(0);
+      }
+      int failures = 0;
+      try {
+        failures = new Batch(options).run();
+      } catch (IOException exception) {
+        System.err.println(exception.getMessage());
+        System.exit(2);
+      } catch (InterruptedException exception) {
+        System.exit(1);
+      }
+      System.exit(failures > 0? 1: 0);
     }
     Transcriber transcriber = new Transcriber(options);
+    Score score = null;
     if (options.getLocation() != null) {
-      Score score = null;
       try {
-        score = new Score(options.getLocation());
+        /* Only the GUI needs the complete document for editing and saving */
+        score = new Score(options.getLocation(), options.getWindowSystem());
       } catch (XPathExpressionException e) {
         // TODO Auto-generated catch block
         e.printStackTrace();
@@ -93,12 +117,26 @@ public final class Main {
         e.printStackTrace();
         System.exit(4);
       }
-      if (score != null) transcriber.setScore(score);
+      if (score != null && options.getWindowSystem())
+        transcriber.setScore(score);
     }
     maybeStartGUI(options, transcriber);
     if (!options.getWindowSystem()) {
-      if (transcriber.getScore() != null) {
-        System.out.println(transcriber.toString());
+      if (score != null) {
+        if (transcriber.getScore() == null) {
+          /* Print pages as soon as they are transcribed */
+          try {
+            final Writer writer = new OutputStreamWriter(System.out);
+            transcriber.setScore(score, writer,
+                                 BrailleEncoding.UnicodeBraille);
+            writer.write(System.getProperty("line.separator"));
+            writer.flush();
+          } catch (IOException exception) {
+            exception.printStackTrace();
+          }
+        } else {
+          System.out.println(transcriber.toString());
+        }
 
         if (options.getExportMidiFile() != null) {
           try {
@@ -208,5 +246,14 @@ public final class Main {
     System.out.println("\t-w WIDTH\tSet braille page width");
     System.out.println("\t-mps NUM\tSpecify number of measures per section");
     System.out.println("\t-bob\t\tBar-over-bar method");
+    System.out.println();
+    System.out.println("Batch conversion: java -jar freedots.jar "
+                       + "-batch DIR [OPTIONS...] LOCATION...");
+    System.out.println("\tLOCATION is a file, URL, directory, pattern "
+                       + "or @listfile");
+    System.out.println("\t-j JOBS\t\tNumber of scores to convert at once");
+    System.out.println("\t-enc ENCODING\tUnicodeBraille, "
+                       + "NorthAmericanBrailleComputerCode or HTML");
+    System.out.println("\t-midi\t\tAlso write a MIDI file per score");
   }
 }
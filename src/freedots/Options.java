@@ -24,6 +24,11 @@ package freedots;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import freedots.braille.BrailleEncoding;
 
 /**
  * Store and process command-line options (transcription parameters included).
@@ -54,6 +59,11 @@ public final class Options {
   public boolean getNewSystemEndsSection() { return newSystemEndsSection; }
 
   private String location;
+  private final List<String> locations = new ArrayList<String>();
+  private File batchDirectory = null;
+  private int jobs = Runtime.getRuntime().availableProcessors();
+  private BrailleEncoding encoding = BrailleEncoding.UnicodeBraille;
+  private boolean exportMidi = false;
   private boolean windowSystem = true;
   private boolean playScore = false;
   private File exportMidiFile = null;
@@ -77,6 +87,8 @@ public final class Options {
    * @param args is the list of command-line arguments specified at startup
    * @throws FileNotFoundException if a required file was not found on the
    *                               filesystem.
+   * @throws IllegalArgumentException if a number or an encoding is
+   *                                  malformed, or locations are misplaced
    */
   public Options(final String[] args) throws FileNotFoundException {
     for (int index = 0; index < args.length; index++) {
@@ -111,6 +123,21 @@ public final class Options {
         }
       } else if ("-bob".equals(option)) {
         method = Method.BarOverBar;
+      } else if ("-batch".equals(option)) {
+        if (index < args.length-1) {
+          batchDirectory = new File(args[++index]);
+          windowSystem = false;
+        }
+      } else if ("-j".equals(option) || "--jobs".equals(option)) {
+        if (index < args.length-1) {
+          jobs = Math.max(1, Integer.parseInt(args[++index]));
+        }
+      } else if ("-enc".equals(option)) {
+        if (index < args.length-1) {
+          encoding = Enum.valueOf(BrailleEncoding.class, args[++index]);
+        }
+      } else if ("-midi".equals(option)) {
+        exportMidi = true;
       } else if ("-sf".equals(option)) {
         if (index < args.length-1) {
           File file = new File(args[++index]);
@@ -121,11 +148,17 @@ public final class Options {
           }
         }
       } else {
-        if (index == args.length-1) {
-          location = args[index];
-        } else throw new IllegalArgumentException();
+        locations.add(option);
       }
     }
+    /* Only batch mode accepts several locations, or any but the last */
+    if (!locations.isEmpty()) {
+      if (batchDirectory == null
+          && (locations.size() > 1
+              || !locations.get(0).equals(args[args.length-1])))
+        throw new IllegalArgumentException();
+      location = locations.get(locations.size()-1);
+    }
     instance = this;
   }
   public static Options getInstance() { return instance; }
@@ -137,6 +170,29 @@ public final class Options {
   public String getLocation() {
     return location;
   }
+  /** Gets all filenames, URLs, directories or patterns specified on the
+   *  command-line for batch conversion.
+   */
+  public List<String> getLocations() {
+    return Collections.unmodifiableList(locations);
+  }
+  /** Gets the directory batch conversion writes to.
+   * @return {@code null} unless batch conversion was requested with "-batch"
+   */
+  public File getBatchDirectory() { return batchDirectory; }
+  /** The number of files to convert at the same time in batch mode.
+   * @return the number of processors unless specified with "-j"
+   */
+  public int getJobs() { return jobs; }
+  /** The braille encoding of the files written in batch mode.
+   * @return {@link BrailleEncoding#UnicodeBraille} unless specified
+   *         with "-enc"
+   */
+  public BrailleEncoding getEncoding() { return encoding; }
+  /** Indicates if batch mode should also write a MIDI file per score.
+   * @return true if "-midi" was specified on the command-line
+   */
+  public boolean getExportMidi() { return exportMidi; }
   /** Retrieves the requested number of lines per braille page.
    * @return {@code DEFAULT_PAGE_HEIGHT} is no value was specified
    * @see #DEFAULT_PAGE_HEIGHT
@@ -179,6 +235,20 @@ public final class Options {
   public Method getMethod() { return method; }
   public void setMethod(final Method method) { this.method = method; }
 
+  private boolean parallelTranscription = true;
+  /** Indicates if the parts of a score which live in documents of their own
+   *  may be constructed and transcribed in parallel.
+   * <p>
+   * Scores consult the options which were created last, see
+   * {@link #getInstance}.  The result is the same either way, this is
+   * for comparison and for callers which already keep all processors busy.
+   * @return true unless disabled with {@link #setParallelTranscription}
+   */
+  public boolean getParallelTranscription() { return parallelTranscription; }
+  public void setParallelTranscription(final boolean value) {
+    parallelTranscription = value;
+  }
+
   /** Enumeration of available user interface implementations.
    * <p>
    * As of now, there is only one implementation ({@link freedots.gui.swing}).
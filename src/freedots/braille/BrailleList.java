@@ -22,9 +22,15 @@
  */
 package freedots.braille;
 
-import java.util.Iterator;
+import java.util.Collection;
 
 /** Represents a logical unit composed of several smaller objects.
+ * <p>
+ * The offsets of the elements are cached, so that length and index
+ * lookups do not have to visit every sign.  The cache is discarded when
+ * the list or one of its descendants is modified through the methods of
+ * {@code BrailleList}.  Changes made through iterators are only seen by
+ * the list itself, not by the lists enclosing it.
  */
 public class BrailleList extends java.util.LinkedList<BrailleSequence>
                          implements BrailleSequence {
@@ -52,6 +58,7 @@ public class BrailleList extends java.util.LinkedList<BrailleSequence>
    * @see BrailleSequence#needsGuideDot
    */
   @Override public boolean add(final BrailleSequence item) {
+    invalidate();
     if (!isEmpty() && getLast().needsGuideDot(item)) {
       final BrailleSequence dot = new GuideDot();
       dot.setParent(this);
@@ -63,6 +70,90 @@ public class BrailleList extends java.util.LinkedList<BrailleSequence>
   }
   @Override public void addLast(final BrailleSequence item) { add(item); }
 
+  @Override public void add(final int index, final BrailleSequence item) {
+    invalidate();
+    super.add(index, item);
+  }
+  @Override public void addFirst(final BrailleSequence item) {
+    invalidate();
+    super.addFirst(item);
+  }
+  @Override
+  public boolean addAll(final Collection<? extends BrailleSequence> items) {
+    invalidate();
+    return super.addAll(items);
+  }
+  @Override public boolean addAll(final int index,
+                                  final Collection<? extends BrailleSequence>
+                                  items) {
+    invalidate();
+    return super.addAll(index, items);
+  }
+  @Override public BrailleSequence set(final int index,
+                                       final BrailleSequence item) {
+    invalidate();
+    return super.set(index, item);
+  }
+  @Override public BrailleSequence remove(final int index) {
+    invalidate();
+    return super.remove(index);
+  }
+  @Override public boolean remove(final Object item) {
+    invalidate();
+    return super.remove(item);
+  }
+  @Override public BrailleSequence removeFirst() {
+    invalidate();
+    return super.removeFirst();
+  }
+  @Override public BrailleSequence removeLast() {
+    invalidate();
+    return super.removeLast();
+  }
+  @Override public void clear() {
+    invalidate();
+    super.clear();
+  }
+
+  /* The elements and their offsets as of the last lookup */
+  private BrailleSequence[] elements = null;
+  private int[] offsets = null;
+  private int offsetsModCount;
+
+  /** Discards the cached offsets of this list and all its ancestors.
+   */
+  private void invalidate() {
+    for (BrailleList list = this; list != null; list = list.parent)
+      list.offsets = null;
+  }
+  /** Returns the offset of every element, followed by the total length.
+   */
+  private int[] offsets() {
+    if (offsets == null || offsetsModCount != modCount) {
+      final BrailleSequence[] newElements =
+        toArray(new BrailleSequence[size()]);
+      final int[] newOffsets = new int[newElements.length + 1];
+      for (int i = 0; i < newElements.length; i++)
+        newOffsets[i + 1] = newOffsets[i] + newElements[i].length();
+      elements = newElements;
+      offsets = newOffsets;
+      offsetsModCount = modCount;
+    }
+    return offsets;
+  }
+  /** Finds the first element which ends after index.
+   * @return the number of elements if there is no such element
+   */
+  private static int elementAt(final int[] offsets, final int index) {
+    int low = 0, high = offsets.length - 1;
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (offsets[middle + 1] > index) high = middle;
+      else low = middle + 1;
+    }
+    return low;
+  }
+
   public String getDescription() {
     return "Groups several signs as a logical unit";
   }
@@ -82,11 +173,16 @@ public class BrailleList extends java.util.LinkedList<BrailleSequence>
     return sb;
   }
   public int length() {
-    int chars = 0;
-    for (BrailleSequence seq: this) chars += seq.length();
-    return chars;
+    final int[] offsets = offsets();
+    return offsets[offsets.length - 1];
+  }
+  public char charAt(int index) {
+    final int[] offsets = offsets();
+    if (index < 0 || index >= offsets[offsets.length - 1])
+      throw new StringIndexOutOfBoundsException(index);
+    final int element = elementAt(offsets, index);
+    return elements[element].charAt(index - offsets[element]);
   }
-  public char charAt(int index) { return toString().charAt(index); }
   public CharSequence subSequence(int start, int end) {
     return toString().subSequence(start, end);
   }
@@ -94,18 +190,13 @@ public class BrailleList extends java.util.LinkedList<BrailleSequence>
   /** Retrieves the {@code Sign} at index.
    */
   public Sign getSignAtIndex(final int index) {
-    final Iterator<BrailleSequence> iterator = iterator();
-    int pos = 0;
-    while (iterator.hasNext()) {
-      final BrailleSequence current = iterator.next();
-      final int length = current.length();
-      if (pos + length > index)
-        return (current instanceof BrailleList)
-          ? ((BrailleList)current).getSignAtIndex(index - pos)
-          : (Sign)current;
-      else pos += length;
-    }
-    return null;
+    final int[] offsets = offsets();
+    final int element = elementAt(offsets, index);
+    if (element == elements.length) return null;
+    final BrailleSequence current = elements[element];
+    return (current instanceof BrailleList)
+      ? ((BrailleList)current).getSignAtIndex(index - offsets[element])
+      : (Sign)current;
   }
   /** Retrieves the visual score object responsible for the braille at index.
    * @see #getSignAtIndex
@@ -126,17 +217,16 @@ public class BrailleList extends java.util.LinkedList<BrailleSequence>
     if (scoreObject == null)
       throw new NullPointerException("Trying to search for null");
 
-    final Iterator<BrailleSequence> iterator = iterator();
-    int index = 0;
-    while (iterator.hasNext()) {
-      final BrailleSequence current = iterator.next();
-      if (current.getScoreObject() == scoreObject) return index;
+    final int[] offsets = offsets();
+    final BrailleSequence[] elements = this.elements;
+    for (int i = 0; i < elements.length; i++) {
+      final BrailleSequence current = elements[i];
+      if (current.getScoreObject() == scoreObject) return offsets[i];
       if (current instanceof BrailleList) {
         final BrailleList compound = (BrailleList)current;
         final int subIndex = compound.getIndexOfScoreObject(scoreObject);
-        if (subIndex >= 0) return index + subIndex;
+        if (subIndex >= 0) return offsets[i] + subIndex;
       }
-      index += current.length();
     }
 
     return -1;
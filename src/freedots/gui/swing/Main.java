@@ -144,7 +144,7 @@ public final class Main extends JFrame
   private MetaEventRelay metaEventRelay = new MetaEventRelay(this);
   public void objectPlaying(Object object) {
     if (caretFollowsPlayback) {
-      final int pos = transcriber.getIndexOfScoreObject(object);
+      final int pos = transcriber.lookupIndexOfScoreObject(object);
       if (pos >= 0) {
         javax.swing.SwingUtilities.invokeLater(
           new Runnable() {
@@ -586,7 +586,7 @@ public final class Main extends JFrame
     setScore(score);
 
     if (object != null) {
-      final int objectPosition = transcriber.getIndexOfScoreObject(object);
+      final int objectPosition = transcriber.lookupIndexOfScoreObject(object);
       if (objectPosition != -1) position = objectPosition;
     }
     textPane.setCaretPosition(position);
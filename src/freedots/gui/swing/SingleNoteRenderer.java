@@ -28,21 +28,19 @@ import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.JPanel;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import freedots.musicxml.Note;
+import freedots.musicxml.ParserPool;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 /**
@@ -85,7 +83,13 @@ final class SingleNoteRenderer extends JPanel {
         System.err.println("File "+filename+" not found");
         return;
       }
-      D = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inputStream);
+      ParserPool parserPool = ParserPool.getDefault();
+      DocumentBuilder documentBuilder = parserPool.acquire();
+      try {
+        D = documentBuilder.parse(inputStream);
+      } finally {
+        parserPool.release(documentBuilder);
+      }
     } catch (SAXException e) {
       // TODO Auto-generated catch block
       e.printStackTrace();
@@ -97,28 +101,14 @@ final class SingleNoteRenderer extends JPanel {
       e.printStackTrace();
     }  
     
-    XPathFactory xPathFactory = XPathFactory.newInstance();
-    
-    XPath xPath = xPathFactory.newXPath();
-    NodeList nodeList = null;
-
-    String xPathExpression = "//icon/bitmap/row";
-    try {
-      nodeList = (NodeList) xPath.evaluate(xPathExpression,
-                                           D, XPathConstants.NODESET);
-    } catch (XPathExpressionException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
-    }
+    List<String> rows = bitmapRows(D);
+    int count = rows.size();
 
-    int count = nodeList.getLength();
-
-    bImage = new BufferedImage(nodeList.item(0).getTextContent().length(),
+    bImage = new BufferedImage(rows.get(0).length(),
                                count, BufferedImage.TYPE_INT_ARGB);
 
     for (int i = 0; i<count; i++) {
-      Node n = nodeList.item(i);
-      String line = n.getTextContent();
+      String line = rows.get(i);
 
       for (int x = 0; x<line.length(); x++) {
         if (line.charAt(x) != TRANSPARENT) {
@@ -134,6 +124,24 @@ final class SingleNoteRenderer extends JPanel {
     iconMap.put(key, bImage);
   }
   
+  /** Collects the text of all icon/bitmap/row elements.
+   */
+  private static List<String> bitmapRows(Document document) {
+    List<String> rows = new ArrayList<String>();
+    Node icon = document.getDocumentElement();
+    if (icon != null && "icon".equals(icon.getNodeName())) {
+      for (Node bitmap = icon.getFirstChild(); bitmap != null;
+           bitmap = bitmap.getNextSibling()) {
+        if (!"bitmap".equals(bitmap.getNodeName())) continue;
+        for (Node row = bitmap.getFirstChild(); row != null;
+             row = row.getNextSibling()) {
+          if ("row".equals(row.getNodeName())) rows.add(row.getTextContent());
+        }
+      }
+    }
+    return rows;
+  }
+
   private void readNoteIcons() 
   {
     
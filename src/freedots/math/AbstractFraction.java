@@ -22,6 +22,8 @@
  */
 package freedots.math;
 
+import java.math.BigInteger;
+
 /**
  * @see <a href="http://en.wikipedia.org/wiki/Fraction_(mathematics)">Wikipedia:
  *      Fraction (mathematics)</a>
@@ -73,37 +75,105 @@ public abstract class AbstractFraction
    *      Wikipedia: Multiplicative inverse</a>
    */
   public Fraction reciprocal() {
-    return new Fraction(denominator(), numerator());
+    return Fraction.valueOf(denominator(), numerator());
   }
   /** Inverts the sign of a fraction.
+   * @throws ArithmeticException if the numerator is {@link Integer#MIN_VALUE}
    */
   public Fraction negate() {
-    return new Fraction(-numerator(), denominator());
+    if (numerator() == Integer.MIN_VALUE)
+      throw new ArithmeticException("fraction overflow: -" + this);
+    return Fraction.valueOf(-numerator(), denominator());
   }
 
+  /* The arithmetic operations below compute intermediate products with
+   * 64 bits (or BigInteger if even that is not enough) and only fail if the
+   * reduced result does not fit into a Fraction.  Results which fit are
+   * exactly those plain int arithmetic would produce without overflow.
+   */
+
   public Fraction add(final AbstractFraction other) {
-    final int an = this.numerator();
-    final int ad = this.denominator();
-    final int bn = other.numerator();
-    final int bd = other.denominator();
-    return new Fraction(an*bd + bn*ad, ad*bd).simplify();
+    final long an = this.numerator();
+    final long ad = this.denominator();
+    final long bn = other.numerator();
+    final long bd = other.denominator();
+    final long left = an*bd, right = bn*ad, sum = left + right;
+    if (((left ^ sum) & (right ^ sum)) < 0) {
+      return reduce(BigInteger.valueOf(left).add(BigInteger.valueOf(right)),
+                    BigInteger.valueOf(ad*bd));
+    }
+    return reduce(sum, ad*bd);
   }      
   public Fraction subtract(final AbstractFraction other) {
-    return add(other.negate());
+    final long an = this.numerator();
+    final long ad = this.denominator();
+    final long bn = other.numerator();
+    final long bd = other.denominator();
+    final long left = an*bd, right = bn*ad, difference = left - right;
+    if (((left ^ right) & (left ^ difference)) < 0) {
+      return reduce(BigInteger.valueOf(left)
+                    .subtract(BigInteger.valueOf(right)),
+                    BigInteger.valueOf(ad*bd));
+    }
+    return reduce(difference, ad*bd);
   }
   public Fraction multiply(final AbstractFraction other) {
-    return new Fraction(this.numerator() * other.numerator(),
-                        this.denominator() * other.denominator()).simplify();
+    return reduce((long)this.numerator() * other.numerator(),
+                  (long)this.denominator() * other.denominator());
   }
   public Fraction multiply(final Integer other) {
-    return new Fraction(this.numerator()*other, this.denominator()).simplify();
+    return reduce((long)this.numerator() * other, this.denominator());
   }
   public Fraction divide(final AbstractFraction other) {
-    return new Fraction(this.numerator() * other.denominator(),
-                        this.denominator() * other.numerator()).simplify();
+    return reduce((long)this.numerator() * other.denominator(),
+                  (long)this.denominator() * other.numerator());
   }
   public Fraction divide(final Integer other) {
-    return new Fraction(numerator(), denominator()*other).simplify();
+    return reduce(numerator(), (long)denominator() * other);
+  }
+
+  /** Creates a fraction reduced like {@link Fraction#simplify} does.
+   * @throws ArithmeticException if the denominator is zero or the reduced
+   *         fraction does not fit into int
+   */
+  static Fraction reduce(final long numerator, final long denominator) {
+    if (denominator == 0)
+      throw new ArithmeticException("denominator is zero");
+    if (numerator == (int)numerator && denominator == (int)denominator) {
+      /* The common case, 32 bit division is a lot cheaper */
+      final int gcd = gcd((int)numerator, (int)denominator);
+      return fraction(numerator / gcd, denominator / gcd);
+    }
+    final long gcd = gcd(numerator, denominator);
+    if (gcd == -1
+        && (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE)) {
+      return reduce(BigInteger.valueOf(numerator),
+                    BigInteger.valueOf(denominator));
+    }
+    return fraction(numerator / gcd, denominator / gcd);
+  }
+  private static Fraction reduce(final BigInteger numerator,
+                                 final BigInteger denominator) {
+    if (denominator.signum() == 0)
+      throw new ArithmeticException("denominator is zero");
+    /* Not BigInteger.gcd, the sign has to match what Euclid gives for ints */
+    BigInteger a = numerator, b = denominator;
+    while (b.signum() != 0) {
+      final BigInteger remainder = a.remainder(b);
+      a = b;
+      b = remainder;
+    }
+    final BigInteger n = numerator.divide(a), d = denominator.divide(a);
+    if (n.bitLength() > 63 || d.bitLength() > 63)
+      throw new ArithmeticException("fraction overflow: " + n + "/" + d);
+    return fraction(n.longValue(), d.longValue());
+  }
+  private static Fraction fraction(final long numerator,
+                                   final long denominator) {
+    if (numerator != (int)numerator || denominator != (int)denominator)
+      throw new ArithmeticException("fraction overflow: "
+                                    + numerator + "/" + denominator);
+    return Fraction.valueOf((int)numerator, (int)denominator);
   }
 
   @Override public String toString() {
@@ -111,8 +181,21 @@ public abstract class AbstractFraction
     return String.valueOf(numerator()) + "/" + denominator();
   }
 
-  private static int gcd(final int a, final int b) {
-    return b == 0? a: gcd(b, a%b);
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      final int remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
+  }
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      final long remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
   }
 }
 
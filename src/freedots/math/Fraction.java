@@ -23,6 +23,9 @@
 package freedots.math;
 
 /** Represents an arbitrary fractional value.
+ * <p>
+ * Fractions are immutable.  Use {@link #valueOf} instead of the
+ * constructor where the same values are created over and over.
  */
 public class Fraction extends AbstractFraction {
   private final int numerator, denominator;
@@ -43,9 +46,35 @@ public class Fraction extends AbstractFraction {
 
   public Fraction simplify() {
     final int gcd = greatestCommonDivisor();
-    return (gcd == 1)? this: new Fraction(numerator / gcd, denominator / gcd);
+    return (gcd == 1)? this: reduce(numerator, denominator);
   }
 
-  public static final Fraction ZERO = new Fraction(0);
+  /* Fractions with small denominators are created all the time */
+  private static final int MAX_CACHED_DENOMINATOR = 64;
+  private static final int MAX_CACHED_NUMERATOR = 512;
+  private static final Fraction[][] CACHE =
+    new Fraction[MAX_CACHED_DENOMINATOR + 1][];
+
+  /** Returns a fraction with the given numerator and denominator.
+   * <p>
+   * The arguments are not reduced.  Small non-negative values are taken
+   * from a cache, so that equal values share an instance.
+   */
+  public static Fraction valueOf(final int numerator, final int denominator) {
+    if (numerator >= 0 && numerator < MAX_CACHED_NUMERATOR
+        && denominator > 0 && denominator <= MAX_CACHED_DENOMINATOR) {
+      /* Races only cost an extra instance, fractions are immutable */
+      Fraction[] row = CACHE[denominator];
+      if (row == null)
+        CACHE[denominator] = row = new Fraction[MAX_CACHED_NUMERATOR];
+      Fraction fraction = row[numerator];
+      if (fraction == null)
+        row[numerator] = fraction = new Fraction(numerator, denominator);
+      return fraction;
+    }
+    return new Fraction(numerator, denominator);
+  }
+
+  public static final Fraction ZERO = valueOf(0, 1);
 }
 
@@ -0,0 +1,149 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots.math;
+
+/**
+ * Fraction arithmetic on primitive values.
+ * <p>
+ * A packed fraction is a {@code long} with the numerator in the upper and
+ * the denominator in the lower 32 bits.  None of the operations allocate,
+ * which makes them suitable for loops which accumulate musical time.
+ * Results are reduced exactly like {@link Fraction#simplify} does, so
+ * converting them with {@link #toFraction} yields fractions which are
+ * {@link Fraction#equals equal} to what the corresponding operations of
+ * {@link AbstractFraction} return.
+ * Intermediate products are computed with 64 bits, an
+ * {@link ArithmeticException} is thrown if a reduced result does not fit
+ * into 32 bits.
+ */
+public final class PackedFraction {
+  private PackedFraction() {}
+
+  /** The packed representation of 0/1.
+   */
+  public static final long ZERO = valueOf(0, 1);
+
+  /** Packs a numerator and denominator without reducing them.
+   */
+  public static long valueOf(final int numerator, final int denominator) {
+    if (denominator == 0)
+      throw new ArithmeticException("denominator is zero");
+    return ((long)numerator << 32) | (denominator & 0xFFFFFFFFL);
+  }
+  public static long valueOf(final AbstractFraction fraction) {
+    return valueOf(fraction.numerator(), fraction.denominator());
+  }
+
+  public static int numerator(final long fraction) {
+    return (int)(fraction >> 32);
+  }
+  public static int denominator(final long fraction) {
+    return (int)fraction;
+  }
+
+  public static Fraction toFraction(final long fraction) {
+    return Fraction.valueOf(numerator(fraction), denominator(fraction));
+  }
+
+  public static boolean isZero(final long fraction) {
+    return numerator(fraction) == 0;
+  }
+  /** Returns the integral part, rounded towards zero.
+   */
+  public static int intValue(final long fraction) {
+    return numerator(fraction) / denominator(fraction);
+  }
+
+  public static long add(final long a, final long b) {
+    final long an = numerator(a), ad = denominator(a);
+    final long bn = numerator(b), bd = denominator(b);
+    final long left = an*bd, right = bn*ad, sum = left + right;
+    if (((left ^ sum) & (right ^ sum)) < 0)
+      throw new ArithmeticException("fraction overflow");
+    return reduce(sum, ad*bd);
+  }
+  public static long subtract(final long a, final long b) {
+    final long an = numerator(a), ad = denominator(a);
+    final long bn = numerator(b), bd = denominator(b);
+    final long left = an*bd, right = bn*ad, difference = left - right;
+    if (((left ^ right) & (left ^ difference)) < 0)
+      throw new ArithmeticException("fraction overflow");
+    return reduce(difference, ad*bd);
+  }
+  public static long multiply(final long a, final long b) {
+    return reduce((long)numerator(a) * numerator(b),
+                  (long)denominator(a) * denominator(b));
+  }
+  public static long divide(final long a, final long b) {
+    return reduce((long)numerator(a) * denominator(b),
+                  (long)denominator(a) * numerator(b));
+  }
+
+  /** Compares the exact values of two packed fractions.
+   * @return a negative value, zero or a positive value if a is smaller,
+   *         equal or greater than b
+   */
+  public static int compare(final long a, final long b) {
+    final long left = (long)numerator(a) * denominator(b);
+    final long right = (long)numerator(b) * denominator(a);
+    final int result = left < right? -1: (left == right? 0: 1);
+    /* Denominators can be negative, see reduce() */
+    return (denominator(a) < 0) == (denominator(b) < 0)? result: -result;
+  }
+
+  /** Reduces a fraction with the same algorithm as
+   *  {@link Fraction#simplify}, including its choice of signs.
+   */
+  private static long reduce(final long numerator, final long denominator) {
+    if (denominator == 0)
+      throw new ArithmeticException("denominator is zero");
+    /* 32 bit division is a lot cheaper */
+    final long gcd =
+      numerator == (int)numerator && denominator == (int)denominator
+      ? gcd((int)numerator, (int)denominator): gcd(numerator, denominator);
+    if (gcd == -1
+        && (numerator == Long.MIN_VALUE || denominator == Long.MIN_VALUE))
+      throw new ArithmeticException("fraction overflow");
+    final long n = numerator / gcd, d = denominator / gcd;
+    if (n != (int)n || d != (int)d)
+      throw new ArithmeticException("fraction overflow: " + n + "/" + d);
+    return valueOf((int)n, (int)d);
+  }
+
+  private static int gcd(int a, int b) {
+    while (b != 0) {
+      final int remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
+  }
+  private static long gcd(long a, long b) {
+    while (b != 0) {
+      final long remainder = a % b;
+      a = b;
+      b = remainder;
+    }
+    return a;
+  }
+}
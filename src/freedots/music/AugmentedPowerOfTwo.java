@@ -24,6 +24,7 @@ package freedots.music;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import freedots.math.Fraction;
 import freedots.math.AbstractFraction;
@@ -40,6 +41,9 @@ import freedots.math.PowerOfTwo;
  */
 public class AugmentedPowerOfTwo extends PowerOfTwo {
   private final int dots, normalNotes, actualNotes;
+  /** The augmented value, computed on first use.
+   */
+  private Fraction value;
 
   /** Constructs a new power of two with the specified number of prolongation
    *  dots.
@@ -63,20 +67,26 @@ public class AugmentedPowerOfTwo extends PowerOfTwo {
     this.normalNotes = normalNotes;
     this.actualNotes = actualNotes;
   }
+  @Override protected void setPower(final int power) {
+    super.setPower(power);
+    value = null;
+  }
+  private Fraction value() {
+    Fraction result = value;
+    if (result == null) {
+      final Fraction base = Fraction.valueOf(super.numerator(),
+                                             super.denominator());
+      value = result = base.multiply(2).subtract(base.divide(pow2(dots)))
+        .multiply(normalNotes).divide(actualNotes);
+    }
+    return result;
+  }
   /** Calculates the actual numerator of this augmented power of two.
    */
-  @Override public int numerator() {
-    Fraction value = new Fraction(super.numerator(), super.denominator());
-    return value.multiply(2).subtract(value.divide(pow2(dots)))
-      .multiply(normalNotes).divide(actualNotes).numerator();
-  }
+  @Override public int numerator() { return value().numerator(); }
   /** Calculates the actual denominator of this augmented power of two.
    */
-  @Override public int denominator() {
-    Fraction value = new Fraction(super.numerator(), super.denominator());
-    return value.multiply(2).subtract(value.divide(pow2(dots)))
-      .multiply(normalNotes).divide(actualNotes).denominator();
-  }
+  @Override public int denominator() { return value().denominator(); }
   /** Returns the amount of augmentation dots attached to this power of two.
    * @return a positive integer
    */
@@ -112,6 +122,57 @@ public class AugmentedPowerOfTwo extends PowerOfTwo {
   public static final PowerOfTwo HEMIDEMISEMIQUAVER = new PowerOfTwo(-6);
   public static final PowerOfTwo SEMIHEMIDEMISEMIQUAVER = new PowerOfTwo(-7);
 
+  private static final int MIN_CACHED_POWER = -10, MAX_CACHED_POWER = 3;
+  private static final int MAX_CACHED_DOTS = 3, MAX_CACHED_NOTES = 16;
+  /* The power of a PowerOfTwo is not final, so instances have to be
+   * published safely
+   */
+  private static final
+  AtomicReferenceArray<AtomicReferenceArray<AugmentedPowerOfTwo>> CACHE =
+    new AtomicReferenceArray<AtomicReferenceArray<AugmentedPowerOfTwo>>(
+      (MAX_CACHED_POWER - MIN_CACHED_POWER + 1) * (MAX_CACHED_DOTS + 1));
+
+  /** Returns an augmented power of two without time modification.
+   * @see #valueOf(PowerOfTwo, int, int, int)
+   */
+  public static AugmentedPowerOfTwo valueOf(final PowerOfTwo value,
+                                            final int dots) {
+    return valueOf(value, dots, 1, 1);
+  }
+  /** Returns an augmented power of two.
+   * <p>
+   * Musically plausible values are taken from a cache, so that equal
+   * durations share an instance.
+   */
+  public static AugmentedPowerOfTwo valueOf(final PowerOfTwo value,
+                                            final int dots,
+                                            final int normalNotes,
+                                            final int actualNotes) {
+    final int power = value.getPower();
+    if (power < MIN_CACHED_POWER || power > MAX_CACHED_POWER
+        || dots < 0 || dots > MAX_CACHED_DOTS
+        || normalNotes < 1 || normalNotes > MAX_CACHED_NOTES
+        || actualNotes < 1 || actualNotes > MAX_CACHED_NOTES)
+      return new AugmentedPowerOfTwo(value, dots, normalNotes, actualNotes);
+
+    final int index = (power - MIN_CACHED_POWER) * (MAX_CACHED_DOTS + 1) + dots;
+    AtomicReferenceArray<AugmentedPowerOfTwo> row = CACHE.get(index);
+    if (row == null) {
+      CACHE.compareAndSet(index, null, new AtomicReferenceArray
+                          <AugmentedPowerOfTwo>(MAX_CACHED_NOTES
+                                                * MAX_CACHED_NOTES));
+      row = CACHE.get(index);
+    }
+    final int column = (normalNotes - 1) * MAX_CACHED_NOTES + actualNotes - 1;
+    AugmentedPowerOfTwo result = row.get(column);
+    if (result == null) {
+      result = new AugmentedPowerOfTwo(value, dots, normalNotes, actualNotes);
+      result.value();
+      if (!row.compareAndSet(column, null, result)) result = row.get(column);
+    }
+    return result;
+  }
+
   /** Tries to guess power and augmentation dots from a fractional value.
    * @throws IllegalArgumentException if the value could not be converted
    */
@@ -140,17 +201,16 @@ public class AugmentedPowerOfTwo extends PowerOfTwo {
       int y = f.denominator();
       if (y == 1) {
         for (int i = 0; i < x; i++)
-          list.add(new AugmentedPowerOfTwo(largest, 0));
+          list.add(valueOf(largest, 0));
         return list;
       }
       int n = firstZeroBit(x);
       int m = firstOneBit(y);
       /* x is always odd, so n is always at least 1 */
       AugmentedPowerOfTwo af =
-        new AugmentedPowerOfTwo(new PowerOfTwo((n-1)-m).multiply(largest),
-                                n-1);
+        valueOf(new PowerOfTwo((n-1)-m).multiply(largest), n-1);
       list.add(af);
-      f = f.subtract(new Fraction((1<<n)-1, y));
+      f = f.subtract(Fraction.valueOf((1<<n)-1, y));
     }
     return list;
   }
@@ -28,18 +28,41 @@ package freedots.music;
  */
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import freedots.math.Fraction;
 import freedots.musicxml.Chord; // FIXME
 import freedots.musicxml.Direction;
 
 public class MusicList extends java.util.ArrayList<Event> {
+  /** True as long as the events are sorted by their moments.
+   * <p>
+   * This is always the case for events added with {@link #add(Event)}.
+   * Some callers insert at explicit positions though, and as soon as one of
+   * them breaks the order, lookups fall back to a linear scan which gives
+   * the same results on unsorted lists.
+   */
+  private boolean ordered = true;
+
+  /* Staff and voice projections are cached until the list is modified.
+   * They reflect the staff and voice assignment of the events at the time
+   * they were built.  Both caches are guarded by this list.
+   */
+  private List<Staff> staves = null;
+  private int stavesModCount;
+  private List<Voice> voices = null;
+  private int voicesModCount;
+
+  private static final AtomicLong projectionHits = new AtomicLong();
+  private static final AtomicLong projectionMisses = new AtomicLong();
+
   public MusicList() {
     super();
   }
@@ -47,15 +70,89 @@ public class MusicList extends java.util.ArrayList<Event> {
    */
   @Override public boolean add(Event newElement) {
     final Fraction moment = newElement.getMoment();
-    ListIterator<Event> iterator = listIterator();
-    while (iterator.hasNext())
-      if (iterator.next().getMoment().compareTo(moment) > 0) {
-        iterator.previous();
-        break;
+    int index;
+    if (ordered) {
+      index = upperBound(moment);
+    } else {
+      for (index = 0; index < size(); index++)
+        if (get(index).getMoment().compareTo(moment) > 0) break;
+    }
+    super.add(index, newElement);
+    return true;
+  }
+  @Override public void add(int index, Event element) {
+    super.add(index, element);
+    if (ordered) checkOrder(index, index + 1);
+  }
+  @Override public Event set(int index, Event element) {
+    final Event previous = super.set(index, element);
+    if (ordered) checkOrder(index, index + 1);
+    staves = null;
+    voices = null;
+    return previous;
+  }
+  @Override public boolean addAll(Collection<? extends Event> events) {
+    final int index = size();
+    final boolean changed = super.addAll(events);
+    if (ordered) checkOrder(index, size());
+    return changed;
+  }
+  @Override public boolean addAll(int index,
+                                  Collection<? extends Event> events) {
+    final boolean changed = super.addAll(index, events);
+    if (ordered) checkOrder(index, index + events.size());
+    return changed;
+  }
+
+  @Override public Object clone() {
+    final MusicList clone = (MusicList)super.clone();
+    clone.staves = null;
+    clone.voices = null;
+    return clone;
+  }
+
+  /** Gets the number of staff or voice projections served from the cache.
+   * @see #getStaff
+   * @see #getVoices()
+   */
+  public static long getProjectionHits() { return projectionHits.get(); }
+  /** Gets the number of staff or voice projections which had to be built.
+   */
+  public static long getProjectionMisses() { return projectionMisses.get(); }
+
+  /** Clears {@link #ordered} if the elements from begin (inclusive) to
+   *  end (exclusive) are out of order with respect to their neighbours.
+   */
+  private void checkOrder(int begin, int end) {
+    for (int i = Math.max(begin, 1); i < Math.min(end + 1, size()); i++) {
+      if (get(i - 1).getMoment().compareTo(get(i).getMoment()) > 0) {
+        ordered = false;
+        return;
       }
+    }
+  }
 
-    iterator.add(newElement);
-    return true;
+  /** Binary search for the first element which is later than moment.
+   */
+  private int upperBound(final Fraction moment) {
+    int low = 0, high = size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (get(middle).getMoment().compareTo(moment) > 0) high = middle;
+      else low = middle + 1;
+    }
+    return low;
+  }
+  /** Binary search for the first element which is not earlier than moment.
+   */
+  private int lowerBound(final Fraction moment) {
+    int low = 0, high = size();
+    while (low < high) {
+      final int middle = (low + high) >>> 1;
+      if (get(middle).getMoment().compareTo(moment) < 0) low = middle + 1;
+      else high = middle;
+    }
+    return low;
   }
 
   /** Returns a list of events which appear at a given time offset.
@@ -66,9 +163,9 @@ public class MusicList extends java.util.ArrayList<Event> {
       throw new IllegalArgumentException("Negative offset");
 
     final MusicList events = new MusicList();
-    final Iterator<Event> iterator = iterator();
-    while (iterator.hasNext()) {
-      final Event event = iterator.next();
+    for (int index = ordered? lowerBound(moment): 0; index < size();
+         index++) {
+      final Event event = get(index);
       if (event.getMoment().compareTo(moment) < 0) continue;
       if (event.getMoment().equals(moment))
         events.add(event);
@@ -87,7 +184,21 @@ public class MusicList extends java.util.ArrayList<Event> {
     }
     return 0;
   }
-  public Staff getStaff(int index) {
+  /** Gets the events of a single staff.
+   * <p>
+   * All staves are built at once and cached until this list is modified.
+   * Building them makes the new staves the staff of their elements (see
+   * {@link StaffElement#setStaff}), so staff elements refer to the
+   * projection which was built last, no matter which list it was built
+   * from.  Staves served from the cache are handed out as they are.
+   */
+  public synchronized Staff getStaff(int index) {
+    if (staves != null && stavesModCount == modCount) {
+      projectionHits.incrementAndGet();
+      return staves.get(index);
+    }
+    projectionMisses.incrementAndGet();
+
     List<Staff> staves = new ArrayList<Staff>();
 
     for (int i = 0; i < getStaffCount(); i++) staves.add(new Staff());
@@ -112,10 +223,29 @@ public class MusicList extends java.util.ArrayList<Event> {
         }
       }
     }
+    this.staves = staves;
+    stavesModCount = modCount;
     return staves.get(index);
   }
 
-  public List<Voice> getVoices() {
+  /** Gets the voices of this list.
+   * <p>
+   * The voices are cached until this list is modified.  Callers get
+   * copies which they are free to modify.
+   */
+  public synchronized List<Voice> getVoices() {
+    if (voices == null || voicesModCount != modCount) {
+      projectionMisses.incrementAndGet();
+      voices = buildVoices();
+      voicesModCount = modCount;
+    } else {
+      projectionHits.incrementAndGet();
+    }
+    List<Voice> voiceList = new ArrayList<Voice>(voices.size());
+    for (Voice voice: voices) voiceList.add((Voice)voice.clone());
+    return voiceList;
+  }
+  private List<Voice> buildVoices() {
     SortedMap<String, Voice> voices = new TreeMap<String, Voice>();
     Voice defaultVoice = null;
     for (Event event:this) {
@@ -67,8 +67,8 @@ public abstract class AbstractDirection implements StaffElement {
   public Fraction getMoment() {
     if (offset != null) {
       int value = Integer.parseInt(offset.getTextContent());
-      return initialDate.add(new Fraction(value * durationMultiplier,
-                                          4 * divisions));
+      return initialDate.add(Fraction.valueOf(value * durationMultiplier,
+                                              4 * divisions));
     }
     return initialDate;
   }
@@ -23,188 +23,178 @@
 package freedots.musicxml;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.logging.Logger;
 
 import freedots.music.KeySignature;
 import freedots.music.TimeSignature;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-/** A wrapper around the attributes element.
+/** The content of an attributes element.
+ * <p>
+ * The element is read in a single pass over its children when the object
+ * is constructed, attributes are immutable afterwards.
  */
 public final class Attributes {
-  private final Element element;
+  private static final Logger LOG =
+    Logger.getLogger(Attributes.class.getName());
 
-  public Attributes(final Element element) {
-    this.element = element;
-  }
-  public int getDivisions() {
-    NodeList nodeList = element.getElementsByTagName("divisions");
-    if (nodeList.getLength() == 1) {
-      Node textNode = nodeList.item(0).getChildNodes().item(0);
-      int divisions = Math.round(Float.parseFloat(textNode.getNodeValue()));
-      return divisions;
-    }
-    return 0;
-  }
-  public int getStaves() {
-    NodeList nodeList = element.getElementsByTagName("staves");
-    if (nodeList.getLength() == 1) {
-      Node textNode = nodeList.item(0).getChildNodes().item(0);
-      int staves = Integer.parseInt(textNode.getNodeValue());
-      return staves;
-    }
-    return 0;
-  }
-  public List<Clef> getClefs() {
-    NodeList nodeList = element.getElementsByTagName("clef");
-    List<Clef> clefs = new ArrayList<Clef>();
-    for (int index = 0; index < nodeList.getLength(); index++) {
-      clefs.add(new Clef((Element)nodeList.item(index)));
-    }
-    return clefs;
-  }
-  public Time getTime() {
-    NodeList nodeList = element.getElementsByTagName("time");
-    if (nodeList.getLength() == 1) {
-      return new Time((Element)nodeList.item(0));
-    } else if (nodeList.getLength() > 1) {
-      System.err.println("Unhandled multiple time signatures in attributes");
-    }
-    return null;
-  }
-  public List<Key> getKeys() {
-    NodeList nodeList = element.getElementsByTagName("key");
-    List<Key> keys = new ArrayList<Key>();
-    for (int index = 0; index < nodeList.getLength(); index++) {
-      keys.add(new Key((Element)nodeList.item(index)));
-    }
-    return keys;
-  }
-  public Transpose getTranspose() {
+  private final int divisions;
+  private final int staves;
+  private final List<Clef> clefs;
+  private final Time time;
+  private final List<Key> keys;
+  private final Transpose transpose;
+
+  public Attributes(final Element element) throws MusicXMLParseException {
+    Element divisionsElement = null, stavesElement = null;
+    int divisionsCount = 0, stavesCount = 0, timeCount = 0;
+    Element timeElement = null;
+    Transpose firstTranspose = null;
+    List<Clef> clefList = null;
+    List<Key> keyList = null;
     for (Node node = element.getFirstChild(); node != null;
          node = node.getNextSibling())
       if (node.getNodeType() == Node.ELEMENT_NODE) {
         Element child = (Element)node;
-        if ("transpose".equals(child.getTagName()))
-          return new Transpose(child);
+        String tagName = child.getTagName();
+        if ("divisions".equals(tagName)) {
+          divisionsElement = child;
+          divisionsCount++;
+        } else if ("staves".equals(tagName)) {
+          stavesElement = child;
+          stavesCount++;
+        } else if ("clef".equals(tagName)) {
+          if (clefList == null) clefList = new ArrayList<Clef>(2);
+          clefList.add(new Clef(child));
+        } else if ("time".equals(tagName)) {
+          timeElement = child;
+          timeCount++;
+        } else if ("key".equals(tagName)) {
+          if (keyList == null) keyList = new ArrayList<Key>(1);
+          keyList.add(new Key(child));
+        } else if ("transpose".equals(tagName)) {
+          if (firstTranspose == null) firstTranspose = new Transpose(child);
+        }
       }
-    return null;
+
+    divisions = divisionsCount == 1
+      ? Math.round(Float.parseFloat(divisionsElement.getTextContent())): 0;
+    staves = stavesCount == 1
+      ? Integer.parseInt(stavesElement.getTextContent().trim()): 0;
+    if (timeCount > 1)
+      System.err.println("Unhandled multiple time signatures in attributes");
+    time = timeCount == 1? new Time(timeElement): null;
+    clefs = clefList != null? Collections.unmodifiableList(clefList)
+            : Collections.<Clef>emptyList();
+    keys = keyList != null? Collections.unmodifiableList(keyList)
+           : Collections.<Key>emptyList();
+    transpose = firstTranspose;
   }
 
-  class Clef extends freedots.music.Clef {
-    private Element element = null;
-    private String staffNumber = null;
+  /** Gets the number of divisions per quarter note, or 0 if unchanged.
+   */
+  public int getDivisions() { return divisions; }
+  /** Gets the number of staves, or 0 if unchanged.
+   */
+  public int getStaves() { return staves; }
+  public List<Clef> getClefs() { return clefs; }
+  public Time getTime() { return time; }
+  public List<Key> getKeys() { return keys; }
+  public Transpose getTranspose() { return transpose; }
+
+  static final class Clef extends freedots.music.Clef {
+    private final int staffNumber;
     Clef(final Element element) {
-      super(getClefSignFromElement(element));
+      super(getClefSign(element));
       if (sign != Sign.percussion && sign != Sign.none) {
-        line = getClefLineFromElement(element);
+        line = getClefLine(element);
       }
-      this.element = element;
-      if (element.hasAttribute("number"))
-        staffNumber = element.getAttribute("number");
-    }
-    public int getStaffNumber() {
-      if (staffNumber != null) return Integer.parseInt(staffNumber) - 1;
-      return 0;
+      staffNumber = element.hasAttribute("number")
+        ? Integer.parseInt(element.getAttribute("number")) - 1: 0;
     }
+    public int getStaffNumber() { return staffNumber; }
   }
-  class Time extends TimeSignature {
-    private Element element = null;
+  @SuppressWarnings("serial")
+  static final class Time extends TimeSignature {
     Time(final Element element) {
-      super(getBeatsFromElement(element), getBeatTypeFromElement(element));
-      this.element = element;
+      super(getInteger(element, "beats"), getInteger(element, "beat-type"));
     }
   }
-  class Key extends KeySignature {
-    private Element element = null;
-    private String staffName = null;
+  static final class Key extends KeySignature {
+    private final String staffName;
     Key(final Element element) {
-      super(getFifthsFromElement(element));
-      this.element = element;
-      staffName = element.getAttribute("number");
-      if (staffName.equals("")) staffName = null;
+      super(getInteger(element, "fifths"));
+      final String number = element.getAttribute("number");
+      staffName = number.equals("")? null: number;
     }
     public String getStaffName() { return staffName; }
   }
 
-  final class Transpose {
-    private Element chromatic, diatonic, octaveChange, doubleDown;
+  /** Transposition only matters for MIDI, so malformed values are
+   *  ignored instead of failing the whole score.
+   */
+  static final class Transpose {
+    private final int chromatic, octaveChange;
     Transpose(final Element element) {
+      int chromatic = 0, octaveChange = 0;
       for (Node node = element.getFirstChild(); node != null;
            node = node.getNextSibling())
         if (node.getNodeType() == Node.ELEMENT_NODE) {
           Element child = (Element)node;
-          if ("chromatic".equals(child.getTagName())) chromatic = child;
-          else if ("diatonic".equals(child.getTagName())) diatonic = child;
-          else if ("octave-change".equals(child.getTagName())) octaveChange = child;
-          else if ("double".equals(child.getTagName())) doubleDown = child;
+          if ("chromatic".equals(child.getTagName()))
+            chromatic = parse(child);
+          else if ("octave-change".equals(child.getTagName()))
+            octaveChange = parse(child);
         }
+      this.chromatic = chromatic;
+      this.octaveChange = octaveChange;
+    }
+    private static int parse(final Element element) {
+      try {
+        return Integer.parseInt(element.getTextContent().trim());
+      } catch (NumberFormatException e) {
+        LOG.warning("Illegal <" + element.getTagName() + "> content '"
+                    + element.getTextContent() + "', using 0");
+        return 0;
+      }
     }
-    public int getChromatic() {
-      if (chromatic != null)
-        return Integer.parseInt(chromatic.getTextContent());
-      return 0;
-    }
-    public int getOctaveChange() {
-      if (octaveChange != null)
-        return Integer.parseInt(octaveChange.getTextContent());
-      return 0;
-    }
+    public int getChromatic() { return chromatic; }
+    public int getOctaveChange() { return octaveChange; }
   }
 
-  private static int getBeatsFromElement(Element element)
-    throws MusicXMLParseException {
-    NodeList nodeList = element.getElementsByTagName("beats");
-    int nodeCount = nodeList.getLength();
-    if (nodeCount >= 1) {
-      Node textNode = nodeList.item(nodeCount-1).getChildNodes().item(0);
-      
-      return Integer.parseInt(textNode.getNodeValue());
-    }
-    throw new MusicXMLParseException("missing <beats> element");
+  /** Finds the last descendant with a given name, in document order.
+   */
+  private static Element findLast(final Node parent, final String name) {
+    for (Node node = parent.getLastChild(); node != null;
+         node = node.getPreviousSibling())
+      if (node.getNodeType() == Node.ELEMENT_NODE) {
+        final Element descendant = findLast(node, name);
+        if (descendant != null) return descendant;
+        if (name.equals(node.getNodeName())) return (Element)node;
+      }
+    return null;
   }
-  private static int
-  getBeatTypeFromElement(Element element) throws MusicXMLParseException {
-    NodeList nodeList = element.getElementsByTagName("beat-type");
-    int nodeCount = nodeList.getLength();
-    if (nodeCount >= 1) {
-      Node textNode = nodeList.item(nodeCount-1).getChildNodes().item(0);
-     
-      return Integer.parseInt(textNode.getNodeValue());
-    }
-    throw new MusicXMLParseException("missing <beat-type> element");
+  private static String getText(final Element element, final String name)
+    throws MusicXMLParseException {
+    final Element child = findLast(element, name);
+    if (child == null)
+      throw new MusicXMLParseException("missing <" + name + "> element");
+    return child.getFirstChild().getNodeValue();
   }
-  private static int
-  getFifthsFromElement(Element element) throws MusicXMLParseException {
-    NodeList nodeList = element.getElementsByTagName("fifths");
-    int nodeCount = nodeList.getLength();
-    if (nodeCount >= 1) {
-      Node textNode = nodeList.item(nodeCount-1).getChildNodes().item(0);
-     
-      return Integer.parseInt(textNode.getNodeValue());
-    }
-    throw new MusicXMLParseException("missing <fifths> element");
+  private static int getInteger(final Element element, final String name)
+    throws MusicXMLParseException {
+    return Integer.parseInt(getText(element, name));
   }
-  private static Clef.Sign getClefSignFromElement(Element element) throws MusicXMLParseException {
-    NodeList nodeList = element.getElementsByTagName("sign");
-    int nodeCount = nodeList.getLength();
-    if (nodeCount >= 1) {
-      Node textNode = nodeList.item(nodeCount-1).getChildNodes().item(0);
-      return Enum.valueOf(Clef.Sign.class, textNode.getNodeValue());
-    }
-    throw new MusicXMLParseException("missing <sign> element");
+  private static Clef.Sign getClefSign(final Element element)
+    throws MusicXMLParseException {
+    return Enum.valueOf(Clef.Sign.class, getText(element, "sign"));
   }
-  static int getClefLineFromElement(Element element) throws MusicXMLParseException {
-    NodeList nodeList = element.getElementsByTagName("line");
-    int nodeCount = nodeList.getLength();
-    if (nodeCount >= 1) {
-      Node textNode = nodeList.item(nodeCount-1).getChildNodes().item(0);
-
-      return Integer.parseInt(textNode.getNodeValue());
-    }
-    throw new MusicXMLParseException("missing <line> element");
+  private static int getClefLine(final Element element)
+    throws MusicXMLParseException {
+    return getInteger(element, "line");
   }
 }
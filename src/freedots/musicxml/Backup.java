@@ -43,9 +43,9 @@ final class Backup {
   public Fraction getDuration() throws MusicXMLParseException {
     NodeList nodeList = element.getElementsByTagName("duration");
     if (nodeList.getLength() == 1) {
-      Node textNode = nodeList.item(0).getChildNodes().item(0);
+      Node textNode = nodeList.item(0).getFirstChild();
       int duration = Math.round(Float.parseFloat(textNode.getNodeValue()));
-      return new Fraction(duration * durationMultiplier, 4 * divisions);
+      return Fraction.valueOf(duration * durationMultiplier, 4 * divisions);
     }
     throw new MusicXMLParseException("Missing <duration> element");
   }
@@ -22,8 +22,6 @@
  */
 package freedots.musicxml;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Set;
 import javax.sound.midi.InvalidMidiDataException;
 import javax.sound.midi.MetaMessage;
@@ -33,13 +31,10 @@ import javax.sound.midi.Track;
 
 import freedots.math.AbstractFraction;
 import freedots.math.Fraction;
-import freedots.music.AccidentalContext;
+import freedots.math.PackedFraction;
 import freedots.music.Articulation;
 import freedots.music.EndBar;
 import freedots.music.Event;
-import freedots.music.GlobalKeyChange;
-import freedots.music.KeyChange;
-import freedots.music.KeySignature;
 import freedots.music.MusicList;
 import freedots.music.Ornament;
 import freedots.music.StartBar;
@@ -62,7 +57,8 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
   private Track tempoTrack;
   private MetaEventRelay metaEventRelay;
   private int velocity = 64;
-  private Map<Integer, AccidentalContext> accidentalContexts;
+  /** Single notes are played without their ornaments */
+  private boolean playOrnaments = true;
 
   /** Converts a score to its unrolled MIDI representation.
    * @param score is the score to convert to MIDI messages
@@ -97,6 +93,7 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
   public MIDISequence(final Note note) throws InvalidMidiDataException {
     super(PPQ, calculatePPQ(note.getPart().getScore().getDivisions()));
     this.pulseDuration = QUARTER.divide(resolution);
+    this.playOrnaments = false;
 
     Track track = createTrack();
 
@@ -118,14 +115,6 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
     initializeMidiPrograms(track, part);
 
     MusicList events = part.getMusicList();
-    {
-      int staffCount = events.getStaffCount();
-      accidentalContexts = new HashMap<Integer, AccidentalContext>();
-      for (int i = 0; i < staffCount; i++) {
-        accidentalContexts.put(new Integer(i),
-                               new AccidentalContext(part.getKeySignature()));
-      }
-    }
 
     int round = 1;
     int repeatStartIndex = -1;
@@ -145,16 +134,7 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
         }
       }          
 
-      if (event instanceof GlobalKeyChange) {
-        GlobalKeyChange globalKeyChange = (GlobalKeyChange)event;
-        KeySignature keySignature = globalKeyChange.getKeySignature();
-        for (int j = 0; j < accidentalContexts.size(); j++) {
-          accidentalContexts.get(j).setKeySignature(keySignature);
-        }
-      } else if (event instanceof KeyChange) {
-        KeyChange keyChange = (KeyChange)event;
-        accidentalContexts.get(keyChange.getStaffNumber()).setKeySignature(keyChange.getKeySignature());
-      } else if (event instanceof Note) {
+      if (event instanceof Note) {
         addToTrack(track, (Note)event, offset);
       } else if (event instanceof Chord) {
         MetaEventRelay temp = null;
@@ -181,9 +161,6 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
       } else if (event instanceof StartBar) {
         if (repeatStartIndex == -1) repeatStartIndex = i;
 
-        for (int j = 0; j < accidentalContexts.size(); j++) {
-          accidentalContexts.get(j).resetToKeySignature();
-        }
         StartBar startBar = (StartBar)event;
         if (unroll) {
           if (startBar.getRepeatForward()) {
@@ -221,7 +198,9 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
   }
   private void addToTrack(Track track, Note note, Fraction add)
     throws InvalidMidiDataException {
-    int offset = toInteger(note.getMoment().add(add));
+    int offset = toInteger(PackedFraction.add(
+                             PackedFraction.valueOf(note.getMoment()),
+                             PackedFraction.valueOf(add)));
     if (note.getLyric() != null && !note.getLyric().getText().isEmpty()) {
       String text = note.getLyric().getText();
       if (note.getLyric().getSyllabic() == Syllabic.SINGLE ||
@@ -249,19 +228,13 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
         }
       }
       if (pitch != null) {
-        if (accidentalContexts != null) {
-          accidentalContexts.get(note.getStaffNumber())
-            .accept(pitch, note.getAccidental());
-        }
         final int midiPitch = pitch.getMIDIPitch();
         final int midiChannel = note.getMidiChannel();
-        if (accidentalContexts != null) {
-          Integer staffNumber = new Integer(note.getStaffNumber());
-          AccidentalContext accidentalContext =
-            accidentalContexts.get(staffNumber);
+        /* The neighbours were resolved along with the accidentals */
+        if (playOrnaments && note.getLowerNeighbour() != null) {
           if (ornaments.contains(Ornament.turn)) {
-            final int upperPitch = pitch.nextStep(accidentalContext).getMIDIPitch();
-            final int lowerPitch = pitch.previousStep(accidentalContext).getMIDIPitch();
+            final int upperPitch = note.getUpperNeighbour().getMIDIPitch();
+            final int lowerPitch = note.getLowerNeighbour().getMIDIPitch();
             duration /= 4;
             noteOnOff(track, midiChannel, upperPitch, velocity,
                       offset, duration);
@@ -276,7 +249,7 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
                       offset, duration);
             return;
           } else if (ornaments.contains(Ornament.mordent)) {
-            final int lowerPitch = pitch.previousStep(accidentalContext).getMIDIPitch();
+            final int lowerPitch = note.getLowerNeighbour().getMIDIPitch();
             duration /= 8;
             noteOnOff(track, midiChannel, midiPitch, velocity,
                       offset, duration);
@@ -348,9 +321,13 @@ public final class MIDISequence extends javax.sound.midi.Sequence {
   }
 
   protected int toInteger(final AbstractFraction duration) {
-    AbstractFraction value = duration.divide(pulseDuration);
-    assert value.denominator() == 1;
-    return value.intValue();
+    return toInteger(PackedFraction.valueOf(duration));
+  }
+  private int toInteger(final long duration) {
+    final long pulse = PackedFraction.valueOf(pulseDuration);
+    final long value = PackedFraction.divide(duration, pulse);
+    assert PackedFraction.denominator(value) == 1;
+    return PackedFraction.intValue(value);
   }
   protected static final Fraction QUARTER = new Fraction(1, 4);
 }
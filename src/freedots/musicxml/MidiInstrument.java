@@ -22,35 +22,45 @@
  */
 package freedots.musicxml;
 
+import java.util.logging.Logger;
+
 import org.w3c.dom.Element;
 import org.w3c.dom.Text;
 
 /** A wrapper around the midi-instrument element.
+ * <p>
+ * The values are read once, MIDI generation asks for them for every note.
  */
 final class MidiInstrument {
-  private final Element xml;
+  private static final Logger LOG =
+    Logger.getLogger(MidiInstrument.class.getName());
 
-  private Text midiProgram;
-  private Text midiChannel;
+  private final String id;
+  private final int midiProgram;
+  private final int midiChannel;
 
   MidiInstrument(final Element xml) {
-    this.xml = xml;
-    midiChannel = Score.getTextNode(xml, "midi-channel");
-    midiProgram = Score.getTextNode(xml, "midi-program");
+    id = xml.getAttribute("id");
+    midiChannel = parse(Score.getTextNode(xml, "midi-channel"));
+    midiProgram = parse(Score.getTextNode(xml, "midi-program"));
+  }
+  /** Converts a 1-based number to a 0-based one, or 0 if it is malformed.
+   */
+  private int parse(final Text text) {
+    if (text == null) return 0;
+    try {
+      return Integer.parseInt(text.getWholeText().trim()) - 1;
+    } catch (NumberFormatException e) {
+      LOG.warning("Illegal <" + text.getParentNode().getNodeName()
+                  + "> content '" + text.getWholeText()
+                  + "' in midi-instrument " + id + ", using 1");
+      return 0;
+    }
   }
 
-  public String getId() { return xml.getAttribute("id"); }
+  public String getId() { return id; }
 
-  public int getMidiProgram() {
-    if (midiProgram != null)
-      return Integer.parseInt(midiProgram.getWholeText()) - 1;
-    return 0;
-  }
+  public int getMidiProgram() { return midiProgram; }
 
-  public int getMidiChannel() {
-    if (midiChannel != null)
-      return Integer.parseInt(midiChannel.getWholeText()) - 1;
-    return 0;
-  }
+  public int getMidiChannel() { return midiChannel; }
 }
-
@@ -28,6 +28,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
@@ -36,9 +38,11 @@ import org.xml.sax.SAXException;
  * <p>
  * This class is used by {@link Score} to avoid the XML parser going out
  * via the network to fetch the MusicXML DTDs referenced in almost all score
- * files.
+ * files.  It also implements {@link javax.xml.stream.XMLResolver} so that
+ * {@link StreamingLoader} resolves the very same DTDs.
  */
-class MusicXMLEntityResolver implements org.xml.sax.EntityResolver {
+class MusicXMLEntityResolver
+  implements org.xml.sax.EntityResolver, javax.xml.stream.XMLResolver {
   private static final Map<String, String>
   PUBLIC_ID_MAP = Collections.unmodifiableMap(new HashMap<String, String>() {
       {
@@ -67,12 +71,20 @@ class MusicXMLEntityResolver implements org.xml.sax.EntityResolver {
   public final InputSource resolveEntity(
     String publicID, String systemID
   ) throws SAXException, IOException {
+    InputStream inputStream = getResourceAsStream(publicID);
+    if (inputStream != null) return new InputSource(inputStream);
+    return null;
+  }
+
+  public final Object resolveEntity(
+    String publicID, String systemID, String baseURI, String namespace
+  ) throws XMLStreamException {
+    return getResourceAsStream(publicID);
+  }
+
+  private InputStream getResourceAsStream(String publicID) {
     String fileName = PUBLIC_ID_MAP.get(publicID);
-    if (fileName != null) {
-      InputStream inputStream = getClass().getResourceAsStream(fileName);
-      if (inputStream != null)
-        return new InputSource(inputStream);
-    }
+    if (fileName != null) return getClass().getResourceAsStream(fileName);
     return null;
   }
 }
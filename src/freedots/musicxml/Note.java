@@ -34,6 +34,7 @@ import java.util.Set;
 import freedots.math.AbstractFraction;
 import freedots.math.Fraction;
 import freedots.math.PowerOfTwo;
+import freedots.music.AbstractPitch;
 import freedots.music.Accidental;
 import freedots.music.Articulation;
 import freedots.music.AugmentedPowerOfTwo;
@@ -75,13 +76,23 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
   private Fraction moment;
   private Staff staff = null;
 
-  private Element grace = null;
+  /* What the getters need is parsed once while loading, so that they
+   * neither walk nor share the DOM (which is not thread-safe for reading).
+   * The element is only needed again for editing.
+   */
+  private static final int GRACE = 1, REST = 2, TIE_START = 4;
+  private int flags = 0;
   private Pitch pitch = null;
   private Unpitched unpitched = null;
-  private Text duration = null;
-  private Text staffNumber, voiceName;
+  /** Null if there is no duration element */
+  private AbstractFraction duration = null;
+  /** Zero-based, the staff element counts from one */
+  private int staffNumber = 0;
+  private String voiceName = null;
+  /** Null if there is no (legal) type element */
+  private PowerOfTwo type = null;
+  private int dots = 0;
 
-  private Element type;
   private static final Map<String, PowerOfTwo> TYPE_MAP =
     Collections.unmodifiableMap(new HashMap<String, PowerOfTwo>() {
       {
@@ -110,8 +121,6 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
     }
   }
 
-  private List<Element> dot = new ArrayList<Element>(3);
-
   private Accidental accidental = null;
   private static final Map<String, Accidental> accidentalMap =
     Collections.unmodifiableMap(new HashMap<String, Accidental>() {
@@ -124,7 +133,6 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
       }
     });
 
-  private Element tie = null;
   private TimeModification timeModification = null;
   public TimeModification getTimeModification() { return timeModification; }
 
@@ -153,26 +161,38 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
   void setMoment(final Fraction moment) { this.moment = moment; }
 
   private void parseDOM() {
+    if ("forward".equals(element.getTagName())) flags |= REST;
+    Element typeElement = null;
+    Element timeModificationElement = null;
     for (Node node = element.getFirstChild(); node != null;
          node = node.getNextSibling()) {
       if (node.getNodeType() == Node.ELEMENT_NODE) {
         Element child = (Element)node;
         if (child.getTagName().equals("grace")) {
-          grace = child;
+          flags |= GRACE;
+        } else if (child.getTagName().equals("rest")) {
+          flags |= REST;
         } else if (child.getTagName().equals("pitch")) {
           pitch = new Pitch(child, transpose);
         } else if (child.getTagName().equals("unpitched")) {
           unpitched = new Unpitched(child);
         } else if (child.getTagName().equals("duration")) {
-          duration = firstTextNode(child);
+          final String text = child.getTextContent().trim();
+          if (text.length() > 0) {
+            final int value = Math.round(Float.parseFloat(text));
+            duration = Fraction.valueOf(value * durationMultiplier,
+                                        4 * divisions);
+          }
         } else if (child.getTagName().equals("tie")) {
-          tie = child;
+          /* The last tie element decides */
+          if (child.getAttribute("type").equals("start")) flags |= TIE_START;
+          else flags &= ~TIE_START;
         } else if (child.getTagName().equals("voice")) {
-          voiceName = firstTextNode(child);
+          voiceName = child.getTextContent();
         } else if (child.getTagName().equals("type")) {
-          type = child;
+          typeElement = child;
         } else if (child.getTagName().equals("dot")) {
-          dot.add(child);
+          dots += 1;
         } else if (child.getTagName().equals(ACCIDENTAL_ELEMENT)) {
           if (part.getScore().encodingSupports(ACCIDENTAL_ELEMENT)) {
             final String accidentalName = child.getTextContent();
@@ -185,9 +205,9 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
                                                + "</accidental>");
           }
         } else if (child.getTagName().equals(TIME_MODIFICATION_ELEMENT)) {
-          timeModification = new TimeModification(child);
+          timeModificationElement = child;
         } else if (child.getTagName().equals(STAFF_ELEMENT)) {
-          staffNumber = firstTextNode(child);
+          staffNumber = Integer.parseInt(child.getTextContent().trim()) - 1;
         } else if (child.getTagName().equals(NOTATIONS_ELEMENT)) {
           notations = new Notations(child);
         } else if (child.getTagName().equals(LYRIC_ELEMENT)) {
@@ -195,42 +215,29 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
         }
       }
     }
+    /* The type is needed by time-modification, which may come first */
+    if (typeElement != null) type = parseType(typeElement);
+    if (timeModificationElement != null)
+      timeModification = new TimeModification(timeModificationElement);
   }
 
-  static Text firstTextNode(Node node) {
-    for (Node child = node.getFirstChild(); node != null;
-         node = node.getNextSibling()) {
-      if (child.getNodeType() == Node.TEXT_NODE) return (Text)child;
-    }
-    return null;
-  }
-
-  public boolean isGrace() {
-    return (grace != null);
-  }
-  public boolean isRest() {
-    if ("forward".equals(element.getTagName()) ||
-        element.getElementsByTagName("rest").getLength() > 0)
-      return true;
-    return false;
-  }
+  public boolean isGrace() { return (flags & GRACE) != 0; }
+  public boolean isRest() { return (flags & REST) != 0; }
   public Pitch getPitch() { return pitch; }
   public Unpitched getUnpitched() { return unpitched; }
-  public int getStaffNumber() {
-    if (staffNumber != null) {
-      return Integer.parseInt(staffNumber.getWholeText()) - 1;
-    }
-    return 0;
-  }
-  public String getVoiceName() {
-    if (voiceName != null) {
-      return voiceName.getWholeText();
-    }
-    return null;
-  }
+  public int getStaffNumber() { return staffNumber; }
+  public String getVoiceName() { return voiceName; }
   public void setVoiceName(String name) {
     if (voiceName != null) {
-      voiceName.replaceWholeText(name);
+      for (Node node = element.getFirstChild(); node != null;
+           node = node.getNextSibling()) {
+        if (node.getNodeType() == Node.ELEMENT_NODE
+            && node.getNodeName().equals("voice")) {
+          node.setTextContent(name);
+          voiceName = name;
+          return;
+        }
+      }
     }
   }
 
@@ -239,8 +246,7 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
    *         modification involved in the actual duration represented.
    */
   public AugmentedPowerOfTwo getAugmentedFraction() {
-    PowerOfTwo base = null;
-    if (type != null) base = parseType(type);
+    final PowerOfTwo base = type;
     if (base != null) {
       int normalNotes = 1;
       int actualNotes = 1;
@@ -248,8 +254,8 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
         normalNotes = timeModification.getNormalNotes();
         actualNotes = timeModification.getActualNotes();
       }
-      return new AugmentedPowerOfTwo(base, dot.size(),
-                                     normalNotes, actualNotes);
+      return AugmentedPowerOfTwo.valueOf(base, dots,
+                                         normalNotes, actualNotes);
     } else {
       return AugmentedPowerOfTwo.valueOf(getDuration());
     }
@@ -260,54 +266,28 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
   }
   void setAccidental(Accidental accidental) {
     this.accidental = accidental;
-
-    if (part.getScore().encodingSupports(ACCIDENTAL_ELEMENT)) {
-      String accidentalName = null;
-      if (accidental != null) {
-        if (accidental.getAlter() == 0) accidentalName = "natural";
-        else if (accidental.getAlter() == -1) accidentalName = "flat";
-        else if (accidental.getAlter() == 1) accidentalName = "sharp";
-      }
-
-      Node node;
-      for (node = element.getFirstChild(); node != null;
-           node = node.getNextSibling()) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-          if (node.getNodeName().equals(ACCIDENTAL_ELEMENT)) {
-            if (accidental != null) {
-              if (accidentalName != null) node.setTextContent(accidentalName);
-            } else {
-              element.removeChild(node);
-            }
-            return;
-          }
-        }
-      }
-
-      for (node = element.getFirstChild(); node != null;
-           node = node.getNextSibling()) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-          if (node.getNodeName().equals(TIME_MODIFICATION_ELEMENT)
-           || node.getNodeName().equals("stem")
-           || node.getNodeName().equals("notehead")
-           || node.getNodeName().equals(STAFF_ELEMENT)
-           || node.getNodeName().equals("beam")
-           || node.getNodeName().equals(NOTATIONS_ELEMENT)
-           || node.getNodeName().equals(LYRIC_ELEMENT)) break;
-        }
-      }
-      Element
-      newElement = element.getOwnerDocument().createElement(ACCIDENTAL_ELEMENT);
-      newElement.setTextContent(accidentalName);
-      element.insertBefore(newElement, node);
-    }
   }
 
-  public boolean isTieStart() {
-    if (tie != null && tie.getAttribute("type").equals("start")) return true;
-    return false;
+  /* The steps above and below this note as altered at its position,
+   * only known for notes with a turn or mordent */
+  private AbstractPitch upperNeighbour = null, lowerNeighbour = null;
+  /** Gets the diatonic step above this note with the alteration which is
+   *  in effect at this note.
+   * @return null unless this note carries a turn or mordent
+   */
+  public AbstractPitch getUpperNeighbour() { return upperNeighbour; }
+  /** Gets the diatonic step below this note with the alteration which is
+   *  in effect at this note.
+   * @return null unless this note carries a turn or mordent
+   */
+  public AbstractPitch getLowerNeighbour() { return lowerNeighbour; }
+  void setNeighbours(AbstractPitch upper, AbstractPitch lower) {
+    upperNeighbour = upper;
+    lowerNeighbour = lower;
   }
 
+  public boolean isTieStart() { return (flags & TIE_START) != 0; }
+
   public Fraction getMoment() { return moment; }
   public Staff getStaff() { return staff; }
   public void setStaff(Staff staff) { this.staff = staff; }
@@ -390,11 +370,7 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
           }
         }
       }
-      if (normalType == null) {
-        if (type != null) {
-          normalType = Note.parseType(type);
-        }
-      }
+      if (normalType == null) normalType = type;
     }
     
     public int getActualNotes() {
@@ -472,10 +448,7 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
     return 0;
   }
   public AbstractFraction getDuration() throws MusicXMLParseException {
-    if (duration != null) {
-      int value = Math.round(Float.parseFloat(duration.getNodeValue()));
-      return new Fraction(value * durationMultiplier, 4 * divisions);
-    }
+    if (duration != null) return duration;
     return getAugmentedFraction();
   }
 
@@ -671,9 +644,8 @@ public final class Note implements RhythmicElement, freedots.music.TupletElement
 
       NodeList nodeList = element.getElementsByTagName("ornaments");
       if (nodeList.getLength() >= 1) {
-        nodeList = ((Element)nodeList.item(nodeList.getLength()-1)).getChildNodes();
-        for (int i = 0; i < nodeList.getLength(); i++) {
-          Node node = nodeList.item(i);
+        for (Node node = nodeList.item(nodeList.getLength()-1).getFirstChild();
+             node != null; node = node.getNextSibling()) {
           if (node.getNodeType() == Node.ELEMENT_NODE) {
             if (node.getNodeName().equals("mordent")) {
               ornaments.add(Ornament.mordent);
@@ -0,0 +1,182 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots.musicxml;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+
+/**
+ * A bounded pool of {@link DocumentBuilder} objects.
+ * <p>
+ * Neither DocumentBuilder nor XPathFactory are thread-safe, so every
+ * thread which wants to parse XML borrows a builder with {@link #acquire}
+ * and hands it back with {@link #release}.  At most {@link #getCapacity}
+ * builders are ever handed out at the same time, further callers block
+ * until a builder is returned.  Builders are reset before they are reused.
+ * <p>
+ * The size of the default pool can be set with the system property
+ * {@code freedots.parserPoolSize} and defaults to the number of available
+ * processors.
+ */
+public final class ParserPool {
+  private static final ParserPool DEFAULT =
+    new ParserPool(Integer.getInteger("freedots.parserPoolSize",
+                                      Runtime.getRuntime()
+                                      .availableProcessors()).intValue());
+
+  private static final ThreadLocal<XPathFactory> XPATH_FACTORY =
+    new ThreadLocal<XPathFactory>() {
+      @Override protected XPathFactory initialValue() {
+        return XPathFactory.newInstance();
+      }
+    };
+  private static final ThreadLocal<Map<String, XPathExpression>> XPATH_CACHE =
+    new ThreadLocal<Map<String, XPathExpression>>() {
+      @Override protected Map<String, XPathExpression> initialValue() {
+        return new HashMap<String, XPathExpression>();
+      }
+    };
+
+  private final DocumentBuilderFactory factory;
+  private final int capacity;
+  private final Semaphore permits;
+  private final Queue<DocumentBuilder> idle =
+    new ConcurrentLinkedQueue<DocumentBuilder>();
+  private final MusicXMLEntityResolver entityResolver =
+    new MusicXMLEntityResolver();
+
+  private final AtomicLong acquisitions = new AtomicLong();
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong waits = new AtomicLong();
+  private final AtomicLong waitNanos = new AtomicLong();
+
+  /** Create a new pool.
+   * @param capacity is the maximum number of builders handed out at once
+   */
+  public ParserPool(final int capacity) {
+    if (capacity < 1)
+      throw new IllegalArgumentException("Pool capacity must be positive");
+    this.capacity = capacity;
+    permits = new Semaphore(capacity, true);
+    factory = DocumentBuilderFactory.newInstance();
+  }
+
+  /** Get the pool shared by the whole application.
+   */
+  public static ParserPool getDefault() { return DEFAULT; }
+
+  /** Get an XPath object for use by the current thread only.
+   */
+  public static XPath newXPath() { return XPATH_FACTORY.get().newXPath(); }
+
+  /** Get a compiled XPath expression for use by the current thread only.
+   * <p>
+   * Every thread compiles a given expression once and reuses it afterwards.
+   * Hot paths should rather walk the tree directly.
+   */
+  public static XPathExpression compile(final String expression)
+    throws XPathExpressionException {
+    final Map<String, XPathExpression> cache = XPATH_CACHE.get();
+    XPathExpression compiled = cache.get(expression);
+    if (compiled == null) {
+      compiled = newXPath().compile(expression);
+      cache.put(expression, compiled);
+    }
+    return compiled;
+  }
+
+  /** Borrow a builder, waiting if all of them are currently in use.
+   * <p>
+   * The returned builder resolves MusicXML DTDs locally.  It must be handed
+   * back with {@link #release} once the caller is done with it, usually in
+   * a finally block.
+   */
+  public DocumentBuilder acquire() throws ParserConfigurationException {
+    if (!permits.tryAcquire()) {
+      final long start = System.nanoTime();
+      permits.acquireUninterruptibly();
+      waits.incrementAndGet();
+      waitNanos.addAndGet(System.nanoTime() - start);
+    }
+    acquisitions.incrementAndGet();
+    DocumentBuilder builder = idle.poll();
+    if (builder == null) {
+      try {
+        synchronized (factory) { builder = factory.newDocumentBuilder(); }
+      } catch (ParserConfigurationException e) {
+        permits.release();
+        throw e;
+      }
+      created.incrementAndGet();
+      builder.setEntityResolver(entityResolver);
+    }
+    return builder;
+  }
+
+  /** Return a builder previously obtained from {@link #acquire}.
+   */
+  public void release(final DocumentBuilder builder) {
+    builder.reset();
+    builder.setEntityResolver(entityResolver);
+    idle.offer(builder);
+    permits.release();
+  }
+
+  /** Get the maximum number of builders handed out at the same time.
+   */
+  public int getCapacity() { return capacity; }
+
+  /** Get the number of times a builder was acquired from this pool.
+   */
+  public long getAcquisitionCount() { return acquisitions.get(); }
+
+  /** Get the number of builders which had to be created so far.
+   */
+  public long getCreatedCount() { return created.get(); }
+
+  /** Get the number of times a caller had to wait for a free builder.
+   */
+  public long getWaitCount() { return waits.get(); }
+
+  /** Get the accumulated time callers spent waiting, in nanoseconds.
+   */
+  public long getWaitNanos() { return waitNanos.get(); }
+
+  @Override public String toString() {
+    return "ParserPool[capacity=" + capacity
+      + ", acquisitions=" + acquisitions + ", created=" + created
+      + ", waits=" + waits + ", waitNanos=" + waitNanos + "]";
+  }
+}
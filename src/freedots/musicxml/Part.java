@@ -23,19 +23,21 @@
 package freedots.musicxml;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.Map;
+import java.util.Set;
 
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
+import freedots.math.AbstractFraction;
 import freedots.math.Fraction;
+import freedots.math.PackedFraction;
 import freedots.music.Accidental;
 import freedots.music.AccidentalContext;
 import freedots.music.ClefChange;
@@ -44,6 +46,7 @@ import freedots.music.GlobalKeyChange;
 import freedots.music.KeyChange;
 import freedots.music.KeySignature;
 import freedots.music.MusicList;
+import freedots.music.Ornament;
 import freedots.music.StartBar;
 import freedots.music.EndBar;
 import freedots.music.TimeSignature;
@@ -60,6 +63,10 @@ public final class Part {
   private static final Logger LOG = Logger.getLogger(Part.class.getName());
 
   private final Element scorePart;
+  /** The midi-instrument elements of the score-part by id, in order.
+   *  Read when MIDI is first generated, null until then.
+   */
+  private Map<String, MidiInstrument> midiInstruments = null;
 
   private final Score score;
   /** Gets the parent {@link freedots.musicxml.Score} of this part.
@@ -91,7 +98,8 @@ public final class Part {
 
     final SlurBuilder slurBuilder = new SlurBuilder();
     final TupletBuilder tupletBuilder = new TupletBuilder();
-    
+    final AccidentalResolver accidentalResolver = new AccidentalResolver();
+
     for (Node partNode = part.getFirstChild(); partNode != null;
          partNode = partNode.getNextSibling()) {
       if (partNode.getNodeType() == Node.ELEMENT_NODE
@@ -108,8 +116,9 @@ public final class Part {
         int endingStop = 0;
 
         Chord currentChord = null;
-        Fraction offset = Fraction.ZERO;
-        Fraction measureDuration = Fraction.ZERO;
+        /* Packed fractions, see freedots.math.PackedFraction */
+        long offset = PackedFraction.ZERO;
+        long measureDuration = PackedFraction.ZERO;
 
         for (Node measureNode = xmlMeasure.getFirstChild();
              measureNode != null; measureNode = measureNode.getNextSibling()) {        
@@ -118,11 +127,12 @@ public final class Part {
             final String tagName = musicdata.getTagName();
             if ("attributes".equals(tagName)) {
               if (currentChord != null) {
-                offset = offset.add(currentChord.get(0).getDuration());
+                offset = advance(offset, currentChord.get(0).getDuration());
                 currentChord = null;
               }
 
-              Attributes attributes = new Attributes(musicdata);
+              final Fraction now = moment(measureOffset, offset);
+              final Attributes attributes = new Attributes(musicdata);
               int newDivisions = attributes.getDivisions();
               Attributes.Time newTimeSignature = attributes.getTime();
               int newStaffCount = attributes.getStaves();
@@ -138,16 +148,15 @@ public final class Part {
                   timeSignature = newTimeSignature;
                 }
                 lastTimeSignature = newTimeSignature;
-                eventList.add(new TimeSignatureChange(measureOffset.add(offset),
-                                                      lastTimeSignature));
-                if (offset.equals(0)) {
+                eventList.add(new TimeSignatureChange(now, lastTimeSignature));
+                if (PackedFraction.isZero(offset)) {
                   startBar.setTimeSignature(newTimeSignature);
                 }
               }
               List<Attributes.Clef> clefs = attributes.getClefs();
               if (clefs.size() > 0) {
                 for (Attributes.Clef clef:clefs) {
-                  eventList.add(new ClefChange(measureOffset.add(offset),
+                  eventList.add(new ClefChange(now,
                                                clef, clef.getStaffNumber()));
                 }
               }
@@ -155,10 +164,9 @@ public final class Part {
               if (keys.size() > 0) {
                 for (Attributes.Key key: keys) {
                   if (key.getStaffName() == null)
-                    eventList.add(new GlobalKeyChange(measureOffset.add(offset),
-                                                      key));
+                    eventList.add(new GlobalKeyChange(now, key));
                   else
-                    eventList.add(new KeyChange(measureOffset.add(offset),
+                    eventList.add(new KeyChange(now,
                                                 key,
                                                 Integer.parseInt(key.getStaffName()) - 1));
                 }
@@ -173,10 +181,10 @@ public final class Part {
 
               if (currentChord != null
                && !elementHasChild(musicdata, Note.CHORD_ELEMENT)) {
-                offset = offset.add(currentChord.get(0).getDuration());
+                offset = advance(offset, currentChord.get(0).getDuration());
                 currentChord = null;
               }
-              note.setMoment(measureOffset.add(offset));
+              note.setMoment(moment(measureOffset, offset));
               boolean advanceTime = !note.isGrace();
               boolean addNoteToEventList = true;
 
@@ -201,42 +209,43 @@ public final class Part {
                 eventList.add(note);
               }
               if (advanceTime) {
-                offset = offset.add(note.getDuration());
+                offset = advance(offset, note.getDuration());
               }
             } else if ("direction".equals(tagName)) {
-              Direction direction = new Direction(musicdata,
-                                                  durationMultiplier, divisions,
-                                                  measureOffset.add(offset));
+              Direction direction =
+                new Direction(musicdata, durationMultiplier, divisions,
+                              moment(measureOffset, offset));
               eventList.add(direction);
             } else if ("harmony".equals(tagName)) {
               final Harmony harmony =
                 new Harmony(musicdata, durationMultiplier, divisions,
-                            measureOffset.add(offset));
+                            moment(measureOffset, offset));
               eventList.add(harmony);
             } else if ("backup".equals(tagName)) { 
               if (currentChord != null) {
-                offset = offset.add(currentChord.get(0).getDuration());
+                offset = advance(offset, currentChord.get(0).getDuration());
                 currentChord = null;
               }
               final Backup backup =
                 new Backup(musicdata, divisions, durationMultiplier);
-              offset = offset.subtract(backup.getDuration());
+              offset = PackedFraction.subtract(offset,
+                PackedFraction.valueOf(backup.getDuration()));
             } else if ("forward".equals(tagName)) {
               if (currentChord != null) {
-                offset = offset.add(currentChord.get(0).getDuration());
+                offset = advance(offset, currentChord.get(0).getDuration());
                 currentChord = null;
               }
               Note invisibleRest = new Note(musicdata,
                                             divisions, durationMultiplier,
                                             currentTranspose, this);
-              invisibleRest.setMoment(measureOffset.add(offset));
+              invisibleRest.setMoment(moment(measureOffset, offset));
               eventList.add(invisibleRest);
-              offset = offset.add(invisibleRest.getDuration());
+              offset = advance(offset, invisibleRest.getDuration());
             } else if ("print".equals(tagName)) {
               Print print = new Print(musicdata);
               if (print.isNewSystem()) startBar.setNewSystem(true);
             } else if ("sound".equals(tagName)) {
-              Sound sound = new Sound(musicdata, measureOffset.add(offset));
+              Sound sound = new Sound(musicdata, moment(measureOffset, offset));
               eventList.add(sound);
             } else if ("barline".equals(tagName)) {
               Barline barline = new Barline(musicdata);
@@ -260,28 +269,34 @@ public final class Part {
               }
             } else
               LOG.info("Unsupported musicdata element " + tagName);
-            if (offset.compareTo(measureDuration) > 0) measureDuration = offset;
+            if (PackedFraction.compare(offset, measureDuration) > 0)
+              measureDuration = offset;
           }
         }
 
         if (currentChord != null) {
-          offset = offset.add(currentChord.get(0).getDuration());
-          if (offset.compareTo(measureDuration) > 0) measureDuration = offset;
+          offset = advance(offset, currentChord.get(0).getDuration());
+          if (PackedFraction.compare(offset, measureDuration) > 0)
+            measureDuration = offset;
           currentChord = null;
         }
         TimeSignature activeTimeSignature = lastTimeSignature != null ? lastTimeSignature : timeSignature;
+        final long expectedDuration =
+          PackedFraction.valueOf(activeTimeSignature);
         if (xmlMeasure.getAttribute("implicit").equalsIgnoreCase(Score.YES)
-         && measureDuration.compareTo(timeSignature) < 0) {
-          measureOffset = measureOffset.add(measureDuration);
+         && PackedFraction.compare(measureDuration,
+                                   PackedFraction.valueOf(timeSignature)) < 0) {
+          measureOffset = moment(measureOffset, measureDuration);
           if (measureNumber == 2) {
             measureNumber = 1;
             startBar.setMeasureNumber(0);
           }
         } else {
-          if (measureDuration.compareTo(activeTimeSignature) != 0) {
+          if (PackedFraction.compare(measureDuration, expectedDuration) != 0) {
             LOG.warning("Incomplete measure "
                         + xmlMeasure.getAttribute("number") + ": "
-                        + timeSignature + " " + measureDuration);
+                        + timeSignature + " "
+                        + PackedFraction.toFraction(measureDuration));
           }
           measureOffset = measureOffset.add(activeTimeSignature);
         }
@@ -293,6 +308,7 @@ public final class Part {
         if (repeatBackward) endbar.setRepeat(true);
         if (endingStop > 0) endbar.setEndingStop(endingStop);
         eventList.add(endbar);
+        accidentalResolver.resolveBefore(measureOffset);
       }
     }
     if (endbar != null) endbar.setEndOfMusic(true);
@@ -302,42 +318,108 @@ public final class Part {
     slurBuilder.buildSlurs();
     tupletBuilder.buildTuplets();
 
-    if (!score.encodingSupports(Note.ACCIDENTAL_ELEMENT)) {
-      int staves = 1;
-      KeySignature defaultKeySignature = new KeySignature(0);
-      List<AccidentalContext> contexts = new ArrayList<AccidentalContext>();
-      for (int i = 0; i < staves; i++) {
-        contexts.add(new AccidentalContext(defaultKeySignature));
-      }
-      for (Event event: eventList) {
-        if (event instanceof StartBar) {
-          StartBar startBar = (StartBar)event;
-          if (startBar.getStaffCount() != staves) {
-            if (startBar.getStaffCount() > staves)
-              for (int i = 0; i < (startBar.getStaffCount() - staves); i++)
-                contexts.add(new AccidentalContext(defaultKeySignature));
-            else if (startBar.getStaffCount() < staves)
-              for (int i = 0; i < (staves - startBar.getStaffCount()); i++)
-                contexts.remove(contexts.size() - 1);
-            staves = startBar.getStaffCount();
-          }
-          for (AccidentalContext accidentalContext: contexts)
-            accidentalContext.resetToKeySignature();
-        } else if (event instanceof GlobalKeyChange) {
-          GlobalKeyChange globalKeyChange = (GlobalKeyChange)event;
-          defaultKeySignature = globalKeyChange.getKeySignature();
-          for (AccidentalContext accidentalContext: contexts)
-            accidentalContext.setKeySignature(defaultKeySignature);
-        } else if (event instanceof KeyChange) {
-          KeyChange keyChange = (KeyChange)event;
+    accidentalResolver.finish();
+  }
+
+  /** Resolves accidentals while the event list is being built.
+   * <p>
+   * An accidental context is kept for every staff.  If the encoding does
+   * not support the accidental element, accidentals are computed from the
+   * pitches.  Notes with a turn or mordent remember their altered
+   * neighbouring steps, so that MIDI playback does not need to track
+   * accidentals again.
+   * <p>
+   * Events are handled as soon as no more events can be inserted before
+   * them.  Should an event nevertheless end up before those already
+   * handled, everything is resolved again from the start.
+   */
+  private class AccidentalResolver {
+    private final boolean compute =
+      !score.encodingSupports(Note.ACCIDENTAL_ELEMENT);
+    private final List<AccidentalContext> contexts =
+      new ArrayList<AccidentalContext>();
+    private KeySignature defaultKeySignature;
+    /** The number of events at the start of eventList already handled */
+    private int resolved;
+    private Event lastResolved;
+
+    AccidentalResolver() { reset(); }
+
+    private void reset() {
+      defaultKeySignature = new KeySignature(0);
+      contexts.clear();
+      contexts.add(new AccidentalContext(defaultKeySignature));
+      resolved = 0;
+      lastResolved = null;
+    }
+
+    /** Handles all events before a moment.
+     */
+    void resolveBefore(final Fraction moment) {
+      if (reordered()) reset();
+      while (resolved < eventList.size()
+             && eventList.get(resolved).getMoment().compareTo(moment) < 0)
+        resolve(lastResolved = eventList.get(resolved++));
+    }
+    /** Handles all remaining events.
+     */
+    void finish() {
+      if (reordered()) reset();
+      while (resolved < eventList.size())
+        resolve(lastResolved = eventList.get(resolved++));
+    }
+    private boolean reordered() {
+      return resolved > 0 && eventList.get(resolved - 1) != lastResolved;
+    }
+
+    private void resolve(final Event event) {
+      if (event instanceof StartBar) {
+        final int staves = ((StartBar)event).getStaffCount();
+        while (contexts.size() < staves)
+          contexts.add(new AccidentalContext(defaultKeySignature));
+        while (contexts.size() > staves)
+          contexts.remove(contexts.size() - 1);
+        for (AccidentalContext accidentalContext: contexts)
+          accidentalContext.resetToKeySignature();
+      } else if (event instanceof GlobalKeyChange) {
+        defaultKeySignature = ((GlobalKeyChange)event).getKeySignature();
+        for (AccidentalContext accidentalContext: contexts)
+          accidentalContext.setKeySignature(defaultKeySignature);
+      } else if (event instanceof KeyChange) {
+        final KeyChange keyChange = (KeyChange)event;
+        if (compute || keyChange.getStaffNumber() < contexts.size())
           contexts.get(keyChange.getStaffNumber())
           .setKeySignature(keyChange.getKeySignature());
-        } else if (event instanceof Note) {
-          calculateAccidental((Note)event, contexts);
-        } else if (event instanceof Chord) {
-          for (Note note: (Chord)event)
-            calculateAccidental(note, contexts);
-        }
+      } else if (event instanceof Note) {
+        resolve((Note)event);
+      } else if (event instanceof Chord) {
+        for (Note note: (Chord)event) resolve(note);
+      }
+    }
+    private void resolve(final Note note) {
+      final Pitch pitch = note.getPitch();
+      if (pitch == null) return;
+
+      final int staffNumber = note.getStaffNumber();
+      /* Without computing accidentals, contexts only serve ornaments */
+      if (!compute && staffNumber >= contexts.size()) return;
+      final AccidentalContext accidentalContext = contexts.get(staffNumber);
+      Accidental accidental = note.getAccidental();
+      if (compute) {
+        accidental = null;
+        if (pitch.getAlter() != accidentalContext.getAlter(pitch.getOctave(),
+                                                           pitch.getStep()))
+          accidental = Accidental.fromAlter(pitch.getAlter());
+        note.setAccidental(accidental);
+      }
+      accidentalContext.accept(pitch, accidental);
+
+      if (note.getNotations() != null) {
+        final Set<Ornament> ornaments = note.getOrnaments();
+        if (ornaments.contains(Ornament.turn)
+            || ornaments.contains(Ornament.mordent))
+          note.setNeighbours(pitch.nextStep(accidentalContext),
+                             pitch.previousStep(accidentalContext));
       }
     }
   }
@@ -383,12 +465,16 @@ public final class Part {
       if (slurMap.size() != 0)
         LOG.warning("Unterminated slurs: "+slurMap.size());
 
+      final Map<Long, List<Note>> notesByMoment =
+        slurs.isEmpty()? null: notesByMoment();
       for (SlurBounds bounds: slurs) {
         Note note = bounds.begin();
         final Slur slur = new Slur(note);
         while (note != bounds.end()) {
           final Fraction nextMoment = note.getMoment().add(note.getDuration());
-          final Collection<Note> notes = notesAt(nextMoment);
+          List<Note> notes =
+            notesByMoment.get(PackedFraction.valueOf(nextMoment));
+          if (notes == null) notes = Collections.emptyList();
           if (notes.size() == 1) {
             slur.add(note = notes.iterator().next());
           } else if (notes.contains(bounds.end())) {
@@ -430,23 +516,24 @@ public final class Part {
   /** Build tuplets
    */
   private class TupletBuilder {
-    private final LinkedList<LinkedList<Note>> map = new LinkedList<LinkedList<Note>>();
-    
+    /** Notes with a time modification, grouped by measure */
+    private final List<List<Note>> measures = new ArrayList<List<Note>>();
+
     public TupletBuilder() { }
-    
-    /** Group note with TimeModification by measure in map according to newMeasure
+
+    /** Group note with TimeModification by measure according to newMeasure
      */
     void visitNote(Note note, boolean newMeasure) {
       if (note.getTimeModification() != null) {
         if (newMeasure)
-          map.add(new LinkedList<Note>());
-        map.getLast().add(note);
+          measures.add(new ArrayList<Note>());
+        measures.get(measures.size() - 1).add(note);
       }
     }
 
-    /** Complete tuplet with note and if necessary with others notes in linkedListNotes
+    /** Complete tuplet with note and if necessary with other notes of voice
      */
-    void completeTuplet(Tuplet tuplet, Note note, LinkedList<Note> linkedListNotes){
+    void completeTuplet(Tuplet tuplet, Note note, VoiceNotes voice){
       if (note != null) {
         final Note.Notations notations = note.getNotations();
         if (notations != null && notations.tupletElementXMLMaxNumber()>1) { //nested tuplet
@@ -480,150 +567,195 @@ public final class Part {
             throw new AssertionError("A note can't be at the beginning AND the end of tuplets. MusicXML file is corrupted.");
           if (hasStart) lastTuplet.addNote(note);
           if (lastTuplet != null) //tuplet is not yet complete
-            completeTuplet(lastTuplet, nextNoteOfTuplet(linkedListNotes, note),
-                           linkedListNotes);
+            completeTuplet(lastTuplet, voice.nextNoteOfTuplet(note), voice);
         } else {
           tuplet.addNote(note); 
           if (!tuplet.completed())
-            completeTuplet(tuplet, nextNoteOfTuplet(linkedListNotes, note),
-                           linkedListNotes);
+            completeTuplet(tuplet, voice.nextNoteOfTuplet(note), voice);
         }
       } else LOG.warning("Tuplet can't be completed, Notes:"+tuplet);
     }
 
-    /** Build tuplets of the score
+    /** Build tuplets of the score, voice by voice in the order in which
+     *  the voices appear in each measure.
      */
     void buildTuplets() {
-      for (LinkedList<Note> linkedListNote: map){
-        Note note=null;
-        List<String> voiceList=new LinkedList<String>();
-        while((note=firstNoteVoice(linkedListNote,voiceList))!=null){ 
-          while(note != null) {
+      for (List<Note> notes: measures) {
+        final Map<String, List<Note>> voices =
+          new LinkedHashMap<String, List<Note>>();
+        for (Note note: notes) {
+          List<Note> voiceNotes = voices.get(note.getVoiceName());
+          if (voiceNotes == null)
+            voices.put(note.getVoiceName(),
+                       voiceNotes = new ArrayList<Note>());
+          voiceNotes.add(note);
+        }
+        for (List<Note> voiceNotes: voices.values()) {
+          final VoiceNotes voice = new VoiceNotes(voiceNotes);
+          Note note = voice.first();
+          while (note != null) {
             Tuplet tuplet = new Tuplet();
-            completeTuplet(tuplet, note, linkedListNote);
+            completeTuplet(tuplet, note, voice);
             while (!(tuplet.getLast() instanceof Note))
               tuplet=(Tuplet)tuplet.getLast();
-            note = (Note)tuplet.getLast();
-            note = nextNoteVoice(linkedListNote, note);
+            note = voice.nextNote((Note)tuplet.getLast());
           }
         }
       }
     }
-    
-    /** @return next note, after note, of the tuplet which contains note
-     * (nextMoment, no tuplet, same voice) in linkedListNotes
-     * null otherwise
-     */
-    public Note nextNoteOfTuplet(LinkedList<Note> linkedListNotes, Note note) {
-      final Fraction nextMoment = note.getMoment().add(note.getDuration());
-      for (Note n: linkedListNotes){
-        if (n.getMoment().equals(nextMoment)) {
-          if (n.getTuplet() == null
-           && n.getVoiceName().equals(note.getVoiceName())){
-            return n;
-          }
+  }
+
+  /** The notes of a single voice of a measure, indexed for tuplet building.
+   * <p>
+   * Notes are ordered by moment and then by document order.  Notes which
+   * already belong to a tuplet are skipped over with path compressed links,
+   * as notes never leave a tuplet again, so that all lookups of a voice
+   * take linear time in total.
+   */
+  private static final class VoiceNotes {
+    private final Note[] notes;
+    /** Maps a packed moment to the index of its first note */
+    private final Map<Long, Integer> first = new HashMap<Long, Integer>();
+    /** The index after the last note with the same moment */
+    private final int[] end;
+    /** Leads towards the next note which is not yet part of a tuplet */
+    private final int[] next;
+
+    VoiceNotes(final List<Note> voiceNotes) {
+      notes = voiceNotes.toArray(new Note[voiceNotes.size()]);
+      /* Stable, and linear for notes which are already in order */
+      Arrays.sort(notes, BY_MOMENT);
+      end = new int[notes.length];
+      next = new int[notes.length];
+      for (int index = 0; index < notes.length;) {
+        final long moment = PackedFraction.valueOf(notes[index].getMoment());
+        int last = index + 1;
+        while (last < notes.length
+               && PackedFraction.valueOf(notes[last].getMoment()) == moment)
+          last++;
+        first.put(moment, index);
+        for (int i = index; i < last; i++) {
+          end[i] = last;
+          next[i] = i + 1;
         }
+        index = last;
       }
-      return null;
     }
 
-    /** @return the first note of the score in linkedListNotes which does not
-     * belong to a voice referenced in voiceList
-     * null otherwise
+    /** @return the earliest note of this voice
      */
-    public Note firstNoteVoice(final LinkedList<Note> linkedListNotes,
-                               final List<String> voiceList) {
-      Note firstNote = null;
-      Fraction minMoment = null;
-      //select a note in a voice never seen before
-      for (Note note: linkedListNotes) {
-        if(!voiceList.contains(note.getVoiceName())){
-          firstNote = note;
-          minMoment = firstNote.getMoment();
-          voiceList.add(firstNote.getVoiceName());
-          break;
-        }
-      }
-      // select the first note in the same voice than firstNote
-      if (firstNote != null) {
-        for (Note note: linkedListNotes) {
-          if (note.getMoment().compareTo(minMoment)<0
-           && firstNote.getVoiceName().equals(note.getVoiceName())) {
-            firstNote = note;
-            minMoment = firstNote.getMoment();
-          }
-        }
+    Note first() { return notes[0]; }
+
+    /** @return next note, after note, of the tuplet which contains note
+     * (nextMoment, no tuplet) or null
+     */
+    Note nextNoteOfTuplet(final Note note) {
+      final Integer index = first.get(nextMoment(note));
+      if (index == null) return null;
+      final int free = free(index);
+      return free < end[index]? notes[free]: null;
+    }
+
+    /** @return the note at nextMoment which is not part of a tuplet yet,
+     * or the earliest such note after note, or null
+     */
+    Note nextNote(final Note note) {
+      final long moment = PackedFraction.valueOf(note.getMoment());
+      if (PackedFraction.compare(nextMoment(note), moment) > 0) {
+        final Note next = nextNoteOfTuplet(note);
+        if (next != null) return next;
       }
-      return firstNote;
+      final int free = free(end[first.get(moment)]);
+      return free < notes.length? notes[free]: null;
+    }
+
+    private static long nextMoment(final Note note) {
+      return PackedFraction.valueOf(note.getMoment().add(note.getDuration()));
     }
 
-    /** @return the next note in linkedListNotes in the same voice than note
-     * null otherwise
+    /** Finds the first note at or after index which is not in a tuplet.
+     * @return the index of that note, or the number of notes
      */
-    public Note nextNoteVoice(LinkedList<Note> linkedListNotes, Note note){
-      Fraction currentMoment = note.getMoment();
-      Note nextNote = null;
-      final Fraction nextMoment = note.getMoment().add(note.getDuration());
-      for (Note n: linkedListNotes) {
-        if (n.getTuplet() == null && (n.getMoment().compareTo(currentMoment)>0) 
-         && n.getVoiceName().equals(note.getVoiceName())) {
-          if (n.getMoment().equals(nextMoment))
-            return n;
-          if (nextNote == null)
-            nextNote = n;
-          else if (n.getMoment().compareTo(nextNote.getMoment())<0)
-            nextNote = n;
-         
-        }
+    private int free(final int index) {
+      int result = index;
+      while (result < notes.length && notes[result].getTuplet() != null)
+        result = next[result];
+      for (int i = index; i != result;) {
+        final int following = next[i];
+        next[i] = result;
+        i = following;
       }
-      return nextNote; 
-    } 
+      return result;
+    }
+
+    private static final Comparator<Note> BY_MOMENT = new Comparator<Note>() {
+      public int compare(final Note a, final Note b) {
+        return a.getMoment().compareTo(b.getMoment());
+      }
+    };
   }
 
-  /** Returns a list of all Note objects at a given musical offset.
-   * If a chord appears at that offset, all of its notes are returned
-   * separately.
+  /** Adds a duration to a packed offset.
    */
-  private Collection<Note> notesAt(final Fraction offset) {
-    Collection<Note> notes = new ArrayList<Note>();
-    for (Event event: eventList.eventsAt(offset)) {
-      if (event instanceof Chord) {
-        notes.addAll((Chord)event);
-      } else if (event instanceof Note) {
-        notes.add((Note)event);
+  private static long advance(final long offset,
+                              final AbstractFraction duration) {
+    return PackedFraction.add(offset, PackedFraction.valueOf(duration));
+  }
+  /** Computes the moment of an event from a measure offset and a packed
+   *  offset within that measure.
+   */
+  private static Fraction moment(final Fraction measureOffset,
+                                 final long offset) {
+    return PackedFraction.toFraction(
+      PackedFraction.add(PackedFraction.valueOf(measureOffset), offset));
+  }
+
+  /** Indexes all Note objects by their packed musical offset.
+   * If a chord appears at an offset, all of its notes are listed
+   * separately.  Notes are listed in the order of {@link #eventList}.
+   */
+  private Map<Long, List<Note>> notesByMoment() {
+    final Map<Long, List<Note>> notes = new HashMap<Long, List<Note>>();
+    for (Event event: eventList) {
+      if (event instanceof Chord || event instanceof Note) {
+        final Long moment = PackedFraction.valueOf(event.getMoment());
+        List<Note> notesAtMoment = notes.get(moment);
+        if (notesAtMoment == null)
+          notes.put(moment, notesAtMoment = new ArrayList<Note>(2));
+        if (event instanceof Chord) notesAtMoment.addAll((Chord)event);
+        else notesAtMoment.add((Note)event);
       }
     }
     return notes;
   }
 
-  private void calculateAccidental (
-    Note note, List<AccidentalContext> contexts
-  ) {
-    Pitch pitch = note.getPitch();
-    if (pitch != null) {
-      int staffNumber = note.getStaffNumber();
-      AccidentalContext accidentalContext = contexts.get(staffNumber);
-      Accidental accidental = null;
-
-      if (pitch.getAlter() != accidentalContext.getAlter(pitch.getOctave(),
-                                                         pitch.getStep())) {
-        accidental = Accidental.fromAlter(pitch.getAlter());
-        if (accidental != null)
-          note.setAccidental(accidental);
-      }
-      accidentalContext.accept(pitch, accidental);
+  /** Gets the MIDI instrument with a particular id.
+   * @param id is the id of the midi-instrument element, or null for the
+   *        first instrument of this part
+   */
+  public synchronized MidiInstrument getMidiInstrument(String id) {
+    if (midiInstruments == null)
+      midiInstruments = readMidiInstruments(scorePart);
+    if (id == null) {
+      return midiInstruments.isEmpty()? null
+             : midiInstruments.values().iterator().next();
     }
+    return midiInstruments.get(id);
   }
 
-  public MidiInstrument getMidiInstrument(String id) {
+  private static Map<String, MidiInstrument> readMidiInstruments(
+    final Element scorePart
+  ) {
+    final Map<String, MidiInstrument> instruments =
+      new LinkedHashMap<String, MidiInstrument>();
     NodeList nodeList = scorePart.getElementsByTagName("midi-instrument");
     for (int index = 0; index < nodeList.getLength(); index++) {
-      MidiInstrument instrument = new MidiInstrument((Element)nodeList.item(index));
-      if (id == null) return instrument;
-      if (id.equals(instrument.getId())) return instrument;
+      MidiInstrument instrument =
+        new MidiInstrument((Element)nodeList.item(index));
+      if (!instruments.containsKey(instrument.getId()))
+        instruments.put(instrument.getId(), instrument);
     }
-
-    return null;
+    return instruments;
   }
 
   public TimeSignature getTimeSignature() { return timeSignature; }
@@ -28,21 +28,27 @@ import org.w3c.dom.Text;
 /** A wrapper around the pitch element (a child of {@link Note}).
  */
 public final class Pitch extends freedots.music.AbstractPitch {
-  private Element element;
-  private Text step, alter, octave;
+  /* Parsed once, the element is not needed afterwards */
+  private final int step, alter, octave;
 
   private Attributes.Transpose transpose = null;
 
   Pitch(final Element element, Attributes.Transpose transpose) throws MusicXMLParseException {
-    this.element = element;
     this.transpose = transpose;
 
-    step = Score.getTextNode(element, "step");
-    alter = Score.getTextNode(element, "alter");
-    octave = Score.getTextNode(element, "octave");
+    final Text step = Score.getTextNode(element, "step");
+    final Text alter = Score.getTextNode(element, "alter");
+    final Text octave = Score.getTextNode(element, "octave");
     if (step == null || octave == null) {
       throw new MusicXMLParseException("Missing step or octave element");
     }
+    try {
+      this.step = convertStep(step.getWholeText());
+      this.alter = alter != null? Integer.parseInt(alter.getWholeText()): 0;
+      this.octave = Integer.parseInt(octave.getWholeText());
+    } catch (NumberFormatException e) {
+      throw new MusicXMLParseException("Illegal pitch: " + e.getMessage());
+    }
   }
   @Override
   public int getMIDIPitch() {
@@ -53,15 +59,9 @@ public final class Pitch extends freedots.music.AbstractPitch {
     }
     return midiPitch;
   }
-  public int getStep() {
-    return convertStep(step.getWholeText());
-  }
-  public int getAlter() {
-    return alter != null? Integer.parseInt(alter.getWholeText()): 0;
-  }
-  public int getOctave() {
-    return Integer.parseInt(octave.getWholeText());
-  }
+  public int getStep() { return step; }
+  public int getAlter() { return alter; }
+  public int getOctave() { return octave; }
 
   public static int convertStep(String step) {
     return "CDEFGAB".indexOf(step.trim().toUpperCase());
@@ -22,36 +22,38 @@
  */
 package freedots.musicxml;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.StringReader;
 import java.math.BigInteger;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentType;
@@ -62,22 +64,14 @@ import org.w3c.dom.Text;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import freedots.DaemonThreadFactory;
+
 /**
  * A MusicXML document in score-partwise format.
  */
 public final class Score {
   private Document document;
-
-  private static XPathFactory xPathFactory = XPathFactory.newInstance();
-  private static DocumentBuilder documentBuilder;
-  static {
-    DocumentBuilderFactory
-    documentBuilderFactory = DocumentBuilderFactory.newInstance();
-    try {
-      documentBuilder = documentBuilderFactory.newDocumentBuilder();
-      documentBuilder.setEntityResolver(new MusicXMLEntityResolver());
-    } catch (ParserConfigurationException e) { e.printStackTrace(); }
-  }
+  private boolean preserveDocument;
 
   /* --- Header fields --- */
   private Element workNumber, workTitle;
@@ -85,14 +79,38 @@ public final class Score {
   private Element composer, lyricist;
   private Element rights;
   private Element encoding;
+  private Map<String, Boolean> supports;
 
   private List<Part> parts;
+  private int divisions;
+
+  private static ExecutorService partExecutor = null;
 
+  /** Construct a score object from an input stream, preserving the DOM.
+   * @param inputStream provides the MusicXML document
+   * @param extension is "mxl" for compressed MusicXML
+   */
   public Score(
     final InputStream inputStream, final String extension
   ) throws ParserConfigurationException,
            IOException, SAXException, XPathExpressionException {
-    parse(inputStream, extension);
+    this(inputStream, extension, true);
+  }
+
+  /** Construct a score object from an input stream.
+   * @param inputStream provides the MusicXML document
+   * @param extension is "mxl" for compressed MusicXML
+   * @param preserveDocument is true if the complete DOM should be kept so
+   *        that {@link #save} can reproduce it.  If false, the score is
+   *        loaded with a {@link StreamingLoader} which needs a lot less
+   *        memory.
+   */
+  public Score(
+    final InputStream inputStream, final String extension,
+    final boolean preserveDocument
+  ) throws ParserConfigurationException,
+           IOException, SAXException, XPathExpressionException {
+    parse(inputStream, extension, preserveDocument);
   }
 
   /** Construct a score object from a URL.
@@ -101,6 +119,18 @@ public final class Score {
   public Score(final String filenameOrURL)
     throws ParserConfigurationException,
            IOException, SAXException, XPathExpressionException
+  {
+    this(filenameOrURL, true);
+  }
+
+  /** Construct a score object from a URL.
+   * @param filenameOrURL is either a local filename or a URL.
+   * @param preserveDocument is true if the complete DOM should be kept so
+   *        that {@link #save} can reproduce it.
+   */
+  public Score(final String filenameOrURL, final boolean preserveDocument)
+    throws ParserConfigurationException,
+           IOException, SAXException, XPathExpressionException
   {
     File file = new File(filenameOrURL);
     InputStream inputStream = null;
@@ -109,55 +139,82 @@ public final class Score {
     int dot = filenameOrURL.lastIndexOf('.');
     if (dot != -1) extension = filenameOrURL.substring(dot + 1);
 
-    if (file.exists()) { /* Local file */
+    if (file.exists() && "mxl".equalsIgnoreCase(extension)) {
+      parseArchive(file, preserveDocument);
+      return;
+    } else if (file.exists()) { /* Local file */
       inputStream = new FileInputStream(file);
     } else {
       URL url = new URL(filenameOrURL);
       inputStream = url.openConnection().getInputStream();
     }
 
-    parse(inputStream, extension);
+    parse(inputStream, extension, preserveDocument);
   }
 
-  private void parse(InputStream inputStream, String extension)
+  private void parse(InputStream inputStream, String extension,
+                     boolean preserveDocument)
     throws ParserConfigurationException, IOException, SAXException,
            XPathExpressionException {
-    Map<String,InputSource> Files = new HashMap<String,InputSource>();
-    String zipEntryName = null;
+    InputSource inputSource;
     if ("mxl".equalsIgnoreCase(extension)) {
-      ZipInputStream zipInputStream = new ZipInputStream(inputStream);
-      ZipEntry zipEntry = null;
-
-      while ((zipEntry = zipInputStream.getNextEntry()) != null) {
-
-        InputSource currentInputSource=getInputSourceFromZipInputStream(zipInputStream);
-        Files.put(zipEntry.getName(),currentInputSource);
-
-        if ("META-INF/container.xml".equals(zipEntry.getName())) {
-          Document container =
-            documentBuilder.parse(currentInputSource);
-          XPath xpath = xPathFactory.newXPath();
-          zipEntryName =
-            (String) xpath.evaluate("container/rootfiles/rootfile/@full-path",
-                                    container, XPathConstants.STRING);
-        } else if (zipEntry.getName().equals(zipEntryName))
-          document = documentBuilder.parse(currentInputSource);
-        zipInputStream.closeEntry();
-      }
-      if (document==null && !(zipEntryName==null)) {
-        document = documentBuilder.parse(Files.get(zipEntryName));
-      }
+      inputSource = getRootFileFromZipInputStream(inputStream);
     } else {
-      document = documentBuilder.parse(inputStream);
+      inputSource = new InputSource(inputStream);
+    }
+    parse(inputSource, preserveDocument);
+  }
+  /** Parses the root file of a local compressed MusicXML file.
+   * <p>
+   * Unlike a stream, a file has a central directory, so only the container
+   * and the root file have to be inflated.
+   */
+  private void parseArchive(File file, boolean preserveDocument)
+    throws ParserConfigurationException, IOException, SAXException,
+           XPathExpressionException {
+    final ZipFile zipFile = new ZipFile(file);
+    try {
+      final ZipEntry container = zipFile.getEntry(CONTAINER);
+      if (container == null)
+        throw new IOException("No " + CONTAINER + " in compressed MusicXML");
+      final ZipEntry rootFile =
+        zipFile.getEntry(getRootFileName(zipFile.getInputStream(container)));
+      if (rootFile == null)
+        throw new IOException("No root file found in compressed MusicXML");
+      parse(new InputSource(zipFile.getInputStream(rootFile)),
+            preserveDocument);
+    } finally {
+      zipFile.close();
+    }
+  }
+  private void parse(InputSource inputSource, boolean preserveDocument)
+    throws ParserConfigurationException, IOException, SAXException,
+           XPathExpressionException {
+    this.preserveDocument = preserveDocument;
+    List<Element> partElements = new ArrayList<Element>();
+    final ParserPool parserPool = ParserPool.getDefault();
+    final DocumentBuilder documentBuilder = parserPool.acquire();
+    try {
+      if (preserveDocument) {
+        document = documentBuilder.parse(inputSource);
+        document.getDocumentElement().normalize();
+      } else {
+        final StreamingLoader loader = new StreamingLoader(documentBuilder);
+        try {
+          document = loader.load(inputSource);
+        } catch (XMLStreamException e) {
+          throw new SAXException(e.getMessage(), e);
+        }
+        partElements.addAll(loader.getParts());
+      }
+    } finally {
+      parserPool.release(documentBuilder);
     }
-
-    document.getDocumentElement().normalize();
 
     Element root = document.getDocumentElement();
 
     assert root.getTagName().equals("score-partwise");
 
-    parts = new ArrayList<Part>();
     Element partList = null;
 
     for (Node node = root.getFirstChild(); node != null;
@@ -201,34 +258,120 @@ public final class Score {
         } else if ("part-list".equals(scoreElement.getTagName())) {
           partList = scoreElement;
         } else if ("part".equals(scoreElement.getTagName())) {
-          Element part = scoreElement;
-          String idValue = part.getAttribute("id");
-          Element scorePart = null;
-          for (Node partlistNode = partList.getFirstChild();
-               partlistNode != null;
-               partlistNode = partlistNode.getNextSibling()) {
-            if (partlistNode.getNodeType() == Node.ELEMENT_NODE
-             && "score-part".equals(partlistNode.getNodeName())) {
-              Element sp = (Element)partlistNode;
-              if (idValue.equals(sp.getAttribute("id"))) {
-                scorePart = sp;
-              }
+          partElements.add(scoreElement);
+        }
+      }
+    }
+
+    final List<Element> scoreParts = new ArrayList<Element>();
+    for (Element part: partElements) {
+      String idValue = part.getAttribute("id");
+      Element scorePart = null;
+      if (partList != null) {
+        for (Node partlistNode = partList.getFirstChild();
+             partlistNode != null;
+             partlistNode = partlistNode.getNextSibling()) {
+          if (partlistNode.getNodeType() == Node.ELEMENT_NODE
+           && "score-part".equals(partlistNode.getNodeName())) {
+            Element sp = (Element)partlistNode;
+            if (idValue.equals(sp.getAttribute("id"))) {
+              scorePart = sp;
             }
           }
-          if (scorePart != null)
-            parts.add(new Part(part, scorePart, this));
-          else
-            throw new RuntimeException("No <score-part> for part " + idValue);
         }
       }
+      if (scorePart == null)
+        throw new RuntimeException("No <score-part> for part " + idValue);
+      scoreParts.add(scorePart);
+    }
+
+    divisions = calculateDivisions(partElements);
+    supports = readSupports(encoding);
+
+    /* A DOM is not even safe for concurrent reads, only parts which live
+     * in documents of their own can be constructed (and transcribed) in
+     * parallel.  Their score-part elements are copied into these documents
+     * as well, everything else a part needs from the score document has
+     * been read above.
+     */
+    if (!preserveDocument) {
+      for (int i = 0; i < partElements.size(); i++) {
+        final Document partDocument = partElements.get(i).getOwnerDocument();
+        scoreParts.set(i, (Element)partDocument.importNode(scoreParts.get(i),
+                                                           true));
+      }
+    }
+    if (preserveDocument || !parallelParts() || partElements.size() < 2) {
+      parts = new ArrayList<Part>(partElements.size());
+      for (int i = 0; i < partElements.size(); i++)
+        parts.add(new Part(partElements.get(i), scoreParts.get(i), this));
+    } else {
+      parts = createPartsInParallel(partElements, scoreParts);
     }
   }
 
+  /** Parts are constructed in parallel unless parallel processing has
+   *  been turned off with {@link freedots.Options#setParallelTranscription}
+   *  in the current options.
+   */
+  private static boolean parallelParts() {
+    final freedots.Options options = freedots.Options.getInstance();
+    return options == null || options.getParallelTranscription();
+  }
+
+  private List<Part> createPartsInParallel(final List<Element> partElements,
+                                           final List<Element> scoreParts) {
+    final List<Future<Part>> futures =
+      new ArrayList<Future<Part>>(partElements.size());
+    for (int i = 0; i < partElements.size(); i++) {
+      final Element part = partElements.get(i);
+      final Element scorePart = scoreParts.get(i);
+      futures.add(getPartExecutor().submit(new Callable<Part>() {
+          public Part call() { return new Part(part, scorePart, Score.this); }
+        }));
+    }
+
+    /* Collect the results in document order */
+    final List<Part> result = new ArrayList<Part>(futures.size());
+    try {
+      for (Future<Part> future: futures) result.add(future.get());
+    } catch (InterruptedException e) {
+      for (Future<Part> future: futures) future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new MusicXMLParseException("Interrupted while constructing parts");
+    } catch (ExecutionException e) {
+      for (Future<Part> future: futures) future.cancel(true);
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new RuntimeException(cause);
+    }
+    return result;
+  }
+
+  private static synchronized ExecutorService getPartExecutor() {
+    if (partExecutor == null) {
+      partExecutor = DaemonThreadFactory.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), "part");
+    }
+    return partExecutor;
+  }
+
+  /** Indicates if the parts of this score live in documents of their own.
+   * <p>
+   * Only then can different parts be read by several threads at once.
+   * @return false if the score was loaded preserving its document
+   */
+  public boolean hasIndependentParts() { return !preserveDocument; }
+
   /** Demarshal this score object back to XML.
    * @param outputStream will be used to serialize the XML to.
+   * @throws IllegalStateException if the score was loaded without
+   *         preserving its document
    */ 
   public void save(OutputStream outputStream) {
-    assert document != null;
+    if (!preserveDocument)
+      throw new IllegalStateException("Score loaded without its document");
 
     DocumentType docType = document.getDoctype();
     DOMSource domSource = new DOMSource(document);
@@ -284,39 +427,102 @@ public final class Score {
     return lyricist != null ? lyricist.getTextContent() : null;
   }
 
-  private InputSource getInputSourceFromZipInputStream(
-    ZipInputStream zipInputStream
-  ) throws IOException {
-    BufferedReader
-    reader = new BufferedReader(new InputStreamReader(zipInputStream));
-    StringBuilder stringBuilder = new StringBuilder();
-    String string = null;
-    while ((string = reader.readLine()) != null)
-      stringBuilder.append(string + "\n");
-    return new InputSource(new StringReader(stringBuilder.toString()));
+  private static final String CONTAINER = "META-INF/container.xml";
+
+  /** Reads the name of the root file from META-INF/container.xml.
+   */
+  private static String getRootFileName(InputStream container)
+    throws ParserConfigurationException,
+           IOException, SAXException, XPathExpressionException {
+    final ParserPool parserPool = ParserPool.getDefault();
+    final DocumentBuilder documentBuilder = parserPool.acquire();
+    Document document;
+    try {
+      document = documentBuilder.parse(container);
+    } finally {
+      parserPool.release(documentBuilder);
+    }
+    return (String) ParserPool.compile(
+      "container/rootfiles/rootfile/@full-path"
+    ).evaluate(document, XPathConstants.STRING);
+  }
+
+  /** Locates the root file of a compressed MusicXML archive.
+   * <p>
+   * The container usually comes first, then the root file is parsed
+   * straight from the archive.  Until the container has been seen, every
+   * file outside META-INF is kept (undecoded), since the root file may
+   * have any name.
+   * @return the content of the root file as listed in META-INF/container.xml
+   */
+  private static InputSource getRootFileFromZipInputStream(
+    InputStream inputStream
+  ) throws ParserConfigurationException,
+           IOException, SAXException, XPathExpressionException {
+    Map<String, byte[]> candidates = new HashMap<String, byte[]>();
+    String rootFileName = null;
+    ZipInputStream zipInputStream = new ZipInputStream(inputStream);
+    ZipEntry zipEntry = null;
+
+    while ((zipEntry = zipInputStream.getNextEntry()) != null) {
+      final String name = zipEntry.getName();
+      if (name.equals(rootFileName)) {
+        return new InputSource(zipInputStream);
+      } else if (CONTAINER.equals(name)) {
+        rootFileName = getRootFileName(
+          new ByteArrayInputStream(readEntry(zipInputStream)));
+        if (candidates.containsKey(rootFileName)) {
+          return new InputSource(
+            new ByteArrayInputStream(candidates.get(rootFileName)));
+        }
+        candidates.clear();
+      } else if (rootFileName == null && !zipEntry.isDirectory()
+                 && !name.startsWith("META-INF/")) {
+        candidates.put(name, readEntry(zipInputStream));
+      }
+      zipInputStream.closeEntry();
+    }
+    throw new IOException("No root file found in compressed MusicXML");
+  }
+  private static byte[] readEntry(ZipInputStream zipInputStream)
+    throws IOException {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    int count;
+    while ((count = zipInputStream.read(buffer)) != -1)
+      bytes.write(buffer, 0, count);
+    return bytes.toByteArray();
   }
 
   /**
-   * Calculate the least common multiple of all divisions elements in the score.
+   * Get the least common multiple of all divisions elements in the score.
    */
-  public int getDivisions() {
-    XPath xPath = xPathFactory.newXPath();
-    try {
-      String xPathExpression = "//attributes/divisions/text()";
-      NodeList nodeList = (NodeList) xPath.evaluate(xPathExpression,
-                                                    document,
-                                                    XPathConstants.NODESET);
-      final int count = nodeList.getLength();
-      BigInteger result = BigInteger.ONE;
-      for (int index = 0; index < count; index++) {
-        Node node = nodeList.item(index);
-        BigInteger divisions = new BigInteger(new Integer(Math.round(Float.parseFloat(node.getNodeValue()))).toString());
-        result = result.multiply(divisions).divide(result.gcd(divisions));
+  public int getDivisions() { return divisions; }
+
+  private static int calculateDivisions(final List<Element> partElements) {
+    BigInteger result = BigInteger.ONE;
+    for (Element part: partElements) {
+      for (Node measure = part.getFirstChild(); measure != null;
+           measure = measure.getNextSibling()) {
+        if (measure.getNodeType() != Node.ELEMENT_NODE) continue;
+        for (Node node = measure.getFirstChild(); node != null;
+             node = node.getNextSibling()) {
+          if (node.getNodeType() != Node.ELEMENT_NODE
+              || !"attributes".equals(node.getNodeName())) continue;
+          for (Node child = node.getFirstChild(); child != null;
+               child = child.getNextSibling()) {
+            if (child.getNodeType() == Node.ELEMENT_NODE
+                && "divisions".equals(child.getNodeName())) {
+              final BigInteger divisions = BigInteger.valueOf(
+                Math.round(Float.parseFloat(child.getTextContent())));
+              result = result.multiply(divisions)
+                       .divide(result.gcd(divisions));
+            }
+          }
+        }
       }
-      return result.intValue();
-    } catch (XPathExpressionException e) {
-      return 0;
     }
+    return result.intValue();
   }
 
   public List<Part> getParts() {
@@ -329,19 +535,8 @@ public final class Score {
    * encoding supports that element.
    */
   public boolean encodingSupports(String elementName) {
-    if (encoding != null) {
-      for (Node node = encoding.getFirstChild(); node != null;
-           node = node.getNextSibling()) {
-        if (node.getNodeType() == Node.ELEMENT_NODE &&
-            node.getNodeName().equals("supports")) {
-          Element supports = (Element)node;
-          if (supports.getAttribute("element").equals(elementName)) {
-            return supports.getAttribute("type").equals(YES);
-          }
-        }
-      }
-    }
-    return true;
+    final Boolean supported = supports.get(elementName);
+    return supported == null || supported.booleanValue();
   }
 
   /** Indicates if the encoding supports a particular MusicXML attribute
@@ -354,33 +549,55 @@ public final class Score {
    */
   public boolean encodingSupports(String element,
                                   String attribute, boolean value) {
+    final Boolean supported = supports.get(supportsKey(element, attribute,
+                                                       value));
+    return supported == null || supported.booleanValue();
+  }
+
+  /** Collects the supports elements of the encoding once, the first one
+   *  for a particular element (and attribute value) wins.
+   */
+  private static Map<String, Boolean> readSupports(final Element encoding) {
+    final Map<String, Boolean> result = new HashMap<String, Boolean>();
     if (encoding != null) {
       for (Node node = encoding.getFirstChild(); node != null;
            node = node.getNextSibling()) {
         if (node.getNodeType() == Node.ELEMENT_NODE
             && node.getNodeName().equals("supports")) {
-          Element supports = (Element)node;
-         if (supports.getAttribute("element").equals(element)
-              && supports.getAttribute("attribute").equals(attribute)
-              && supports.getAttribute("value").equals(YES) == value) {
-            return supports.getAttribute("type").equals(YES);
+          final Element supports = (Element)node;
+          final String element = supports.getAttribute("element");
+          final Boolean type =
+            Boolean.valueOf(supports.getAttribute("type").equals(YES));
+          if (!result.containsKey(element)) result.put(element, type);
+          final String attribute = supports.getAttribute("attribute");
+          if (attribute.length() > 0) {
+            final String key = supportsKey(element, attribute, supports
+                                           .getAttribute("value").equals(YES));
+            if (!result.containsKey(key)) result.put(key, type);
           }
         }
       }
     }
-    return true;
+    return result;
+  }
+  private static String supportsKey(String element,
+                                    String attribute, boolean value) {
+    return element + '@' + attribute + '=' + value;
   }
 
   static final String YES = "yes";
 
   /* --- W3C DOM convenience access utilities --- */
 
+  /* Children are walked as siblings: indexed access through getChildNodes()
+   * updates a cache of the document, which would make concurrent
+   * transcriptions of a shared score unsafe.
+   */
   static Text getTextNode(Element element, String childTagName) {
     NodeList nodeList = element.getElementsByTagName(childTagName);
     if (nodeList.getLength() >= 1) {
-      nodeList = nodeList.item(nodeList.getLength()-1).getChildNodes();
-      for (int index = 0; index < nodeList.getLength(); index++) {
-        Node node = nodeList.item(index);
+      for (Node node = nodeList.item(nodeList.getLength()-1).getFirstChild();
+           node != null; node = node.getNextSibling()) {
         if (node.getNodeType() == Node.TEXT_NODE) return (Text)node;
       }
     }
@@ -0,0 +1,205 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots.musicxml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/** Loads a MusicXML document with a StAX {@link XMLStreamReader}.
+ * <p>
+ * The classes of this package are wrappers around DOM elements, so the
+ * loader still produces a {@link Document}.  However, it builds the tree
+ * directly from the stream of parser events and leaves out everything
+ * the rest of FreeDots never looks at: whitespace between elements, comments,
+ * processing instructions and purely presentational elements like
+ * {@code <defaults>}, {@code <credit>}, {@code <stem>} or {@code <beam>}.
+ * The resulting tree is considerably smaller than what a
+ * {@link DocumentBuilder} produces for the same file, but it can not be
+ * serialized back to an equivalent MusicXML file.  Note that the tree is
+ * not thrown away after loading, the wrappers keep referring to it for
+ * as long as the score lives (the heap benchmark measures how much is
+ * retained).
+ * <p>
+ * Every {@code <part>} element is the root of a document of its own and
+ * is therefore not reachable from the score document.  DOM implementations
+ * keep per-document caches even for read access, so this is what allows
+ * parts to be processed concurrently.
+ * @see Score#save
+ * @see #getParts
+ */
+final class StreamingLoader {
+  /** Elements which only carry layout information.
+   * Their complete subtree is skipped.
+   */
+  private static final Set<String> SKIPPED_ELEMENTS =
+    Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+      "defaults", "credit", "appearance",
+      "page-layout", "system-layout", "staff-layout", "measure-layout",
+      "stem", "beam", "notehead"
+    )));
+
+  private static final XMLInputFactory INPUT_FACTORY;
+  static {
+    INPUT_FACTORY = XMLInputFactory.newInstance();
+    /* Like the DOM parser, which is not namespace aware either.  Prefixes
+     * such as xlink are declared by the DTD, if at all, and names keep
+     * them as they are. */
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+                              Boolean.FALSE);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    INPUT_FACTORY.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES,
+                              Boolean.TRUE);
+    INPUT_FACTORY.setXMLResolver(new MusicXMLEntityResolver());
+  }
+
+  private final DocumentBuilder documentBuilder;
+  private final List<Element> parts = new ArrayList<Element>();
+
+  StreamingLoader(final DocumentBuilder documentBuilder) {
+    this.documentBuilder = documentBuilder;
+  }
+
+  /** Gets the part elements of the last loaded score in document order.
+   */
+  List<Element> getParts() { return parts; }
+
+  /** Reads a complete MusicXML document.
+   * @param inputSource provides either a character or a byte stream
+   * @return a new document which is not connected to any parser state
+   * @throws XMLStreamException if the input is not well-formed
+   */
+  Document load(final InputSource inputSource) throws XMLStreamException {
+    final XMLStreamReader reader;
+    if (inputSource.getCharacterStream() != null)
+      reader = INPUT_FACTORY.createXMLStreamReader(
+        inputSource.getCharacterStream());
+    else
+      reader = INPUT_FACTORY.createXMLStreamReader(
+        inputSource.getByteStream());
+
+    try {
+      return load(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private Document load(final XMLStreamReader reader)
+    throws XMLStreamException {
+    final Document scoreDocument = documentBuilder.newDocument();
+    final StringBuilder text = new StringBuilder();
+    Document document = scoreDocument;
+    Node current = document;
+    int skipDepth = 0;
+
+    parts.clear();
+
+    while (reader.hasNext()) {
+      switch (reader.next()) {
+      case XMLStreamConstants.START_ELEMENT:
+        if (skipDepth > 0 || SKIPPED_ELEMENTS.contains(reader.getLocalName())) {
+          skipDepth++;
+        } else {
+          flushText(document, current, text, false);
+          final boolean part = current.getParentNode() == scoreDocument
+                               && "part".equals(reader.getLocalName());
+          if (part) document = documentBuilder.newDocument();
+          final Element element =
+            document.createElement(qualifiedName(reader.getPrefix(),
+                                                 reader.getLocalName()));
+          for (int index = 0; index < reader.getAttributeCount(); index++) {
+            element.setAttribute(
+              qualifiedName(reader.getAttributePrefix(index),
+                            reader.getAttributeLocalName(index)),
+              reader.getAttributeValue(index));
+          }
+          if (part) {
+            document.appendChild(element);
+            parts.add(element);
+          } else {
+            current.appendChild(element);
+          }
+          current = element;
+        }
+        break;
+      case XMLStreamConstants.END_ELEMENT:
+        if (skipDepth > 0) {
+          skipDepth--;
+        } else {
+          flushText(document, current, text, current.getFirstChild() == null);
+          if (document != scoreDocument
+              && current.getParentNode() == document) {
+            document = scoreDocument;
+            current = document.getDocumentElement();
+          } else {
+            current = current.getParentNode();
+          }
+        }
+        break;
+      case XMLStreamConstants.CHARACTERS:
+      case XMLStreamConstants.CDATA:
+      case XMLStreamConstants.SPACE:
+        if (skipDepth == 0 && current != document)
+          text.append(reader.getText());
+        break;
+      default:
+        break;
+      }
+    }
+    return scoreDocument;
+  }
+
+  /** Appends collected character data to the current element.
+   * Whitespace-only text is dropped unless it is the sole content of
+   * an element.
+   */
+  private static void flushText(final Document document, final Node parent,
+                                final StringBuilder text, final boolean leaf) {
+    if (text.length() > 0) {
+      if (leaf || text.toString().trim().length() > 0)
+        parent.appendChild(document.createTextNode(text.toString()));
+      text.setLength(0);
+    }
+  }
+
+  private static String qualifiedName(final String prefix,
+                                      final String localName) {
+    if (prefix == null || prefix.length() == 0) return localName;
+    return prefix + ":" + localName;
+  }
+}
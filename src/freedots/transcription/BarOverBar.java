@@ -23,6 +23,8 @@
 package freedots.transcription;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import freedots.braille.BrailleKeySignature;
@@ -164,7 +166,7 @@ class BarOverBar implements Strategy {
       int staffCount = musicList.getStaffCount();
       for (int staffIndex = 0; staffIndex < staffCount; staffIndex++) {
         Staff staff = musicList.getStaff(staffIndex);
-        BrailleStaff brailleStaff = new BrailleStaff();
+        BrailleStaff brailleStaff = new BrailleStaff(part);
         BrailleMeasure measure = new BrailleMeasure(transcriber);
         boolean displayClefChange = false;
         int voiceDirection = -1;
@@ -194,8 +196,6 @@ class BarOverBar implements Strategy {
             startBar = (StartBar)event;
             measure.setTimeSignature(startBar.getTimeSignature());
           } else if (event instanceof EndBar) {
-            EndBar rightBar = (EndBar)event;
-            measure.process();
             brailleStaff.add(measure);
             measure = new BrailleMeasure(transcriber, measure);
             measure.setChordDirection(voiceDirection);
@@ -207,10 +207,57 @@ class BarOverBar implements Strategy {
         brailleStaves.add(brailleStaff);
       }
     }
+
+    if (options.getParallelTranscription() && score.hasIndependentParts()
+        && score.getParts().size() > 1) {
+      analyzeInParallel();
+      for (BrailleStaff brailleStaff: brailleStaves)
+        for (BrailleMeasure measure: brailleStaff) measure.detectSimile();
+    } else {
+      for (BrailleStaff brailleStaff: brailleStaves)
+        for (BrailleMeasure measure: brailleStaff) measure.process();
+    }
+  }
+
+  /** Analyzes the measures of each part on the transcription pool.
+   * <p>
+   * Notes still read some of their properties from the DOM, which is not
+   * safe to do from several threads at once.  The measures of one part
+   * are therefore analyzed by a single task, since only different parts
+   * of a score which does not preserve its document live in different
+   * documents.
+   */
+  private void analyzeInParallel() {
+    final List<List<BrailleMeasure>> parts =
+      new ArrayList<List<BrailleMeasure>>();
+    Part part = null;
+    for (BrailleStaff brailleStaff: brailleStaves) {
+      if (brailleStaff.getPart() != part) {
+        part = brailleStaff.getPart();
+        parts.add(new ArrayList<BrailleMeasure>());
+      }
+      parts.get(parts.size() - 1).addAll(brailleStaff);
+    }
+    final List<Future<?>> futures = new ArrayList<Future<?>>();
+    try {
+      for (final List<BrailleMeasure> measures: parts) {
+        futures.add(Transcriber.getExecutor().submit(new Runnable() {
+            public void run() {
+              for (BrailleMeasure measure: measures) measure.analyze();
+            }
+          }));
+      }
+      for (Future<?> future: futures) Transcriber.await(future);
+    } finally {
+      for (Future<?> future: futures) future.cancel(true);
+    }
   }
 
   private class BrailleStaff extends ArrayList<BrailleMeasure> {
+    private final Part part;
     private Sign intro = null;
+    BrailleStaff(Part part) { this.part = part; }
+    Part getPart() { return part; }
     void setIntro(Sign intro) { this.intro = intro; }
     Sign getIntro() { return intro; }
   }
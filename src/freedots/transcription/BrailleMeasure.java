@@ -26,7 +26,6 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Logger;
-import java.util.Set;
 
 import freedots.Braille;
 import freedots.braille.BrailleChord;
@@ -87,6 +86,9 @@ class BrailleMeasure {
   public void unlinkPrevious() { previous = null; }
 
   private List<Object> brailleVoices = new ArrayList<Object>();
+  /** Interpretations of the values of every full measure in-accord part */
+  private List<ValueInterpreter> valueInterpreters =
+    new ArrayList<ValueInterpreter>();
   private boolean fullSimile = false;
 
   /**
@@ -95,104 +97,151 @@ class BrailleMeasure {
    * This code is very hairy and definitely needs an overhaul.
    * It is also incomplete as it does not handle individual voices repeating.
    */
-   // TODO: Find a data structure to represent part/full measure in-accord
   public void process() {
+    detectSimile();
+    if (!fullSimile) analyze();
+  }
+
+  /** Decides if this measure repeats the previous one.
+   * <p>
+   * This is the only part of {@link #process} which looks at another
+   * measure.  When measures are analyzed in parallel, it has to be called
+   * afterwards, in order.
+   */
+  void detectSimile() {
     if (previous != null) {
       if (previous.getEvents().equalsIgnoreOffset(this.events)) {
         fullSimile = true;
       }
     }
+  }
 
-    if (!fullSimile) {
-      brailleVoices = new ArrayList<Object>();
-
-      List<Voice> voices = events.getVoices(voiceDirection);
-      FullMeasureInAccord fmia = new FullMeasureInAccord();
-      PartMeasureInAccord pmia = new PartMeasureInAccord();
-
-      while (voices.size() > 0) {
-        Voice voice = voices.get(0);
-        boolean foundOverlap = false;
-        int headLength = 0;
-
-        for (int j = 1; j < voices.size(); j++) {
-          int equalsAtBeginning = voice.countEqualsAtBeginning(voices.get(j));
-          if (equalsAtBeginning > 0) {
-            headLength = equalsAtBeginning;
-            MusicList head = new MusicList();
-            for (int k = 0; k < equalsAtBeginning; k++) {
-              head.add(voice.get(k));
-              voices.get(j).remove(0);
-            }
-            pmia.setHead(head);
-            pmia.addPart(voice);
-            pmia.addPart(voices.get(j));
-            voices.remove(voices.get(j));
-            foundOverlap = true;
-          } else if (foundOverlap && equalsAtBeginning == headLength) {
-            for (int k = 0; k < equalsAtBeginning; k++) {
-              voices.get(j).remove(k);
-            }
-            pmia.addPart(voices.get(j));
-            voices.remove(voices.get(j));
+  /** Finds voice overlaps and interprets note values.
+   * <p>
+   * Only the events of this measure are looked at, so different measures
+   * can be analyzed on different threads.  The result is not used if
+   * {@link #detectSimile} decides that the measure is a simile.
+   */
+  // TODO: Find a data structure to represent part/full measure in-accord
+  void analyze() {
+    brailleVoices = new ArrayList<Object>();
+
+    List<Voice> voices = events.getVoices(voiceDirection);
+    FullMeasureInAccord fmia = new FullMeasureInAccord();
+    PartMeasureInAccord pmia = new PartMeasureInAccord();
+
+    while (voices.size() > 0) {
+      Voice voice = voices.get(0);
+      boolean foundOverlap = false;
+      int headLength = 0;
+
+      for (int j = 1; j < voices.size(); j++) {
+        int equalsAtBeginning = voice.countEqualsAtBeginning(voices.get(j));
+        if (equalsAtBeginning > 0) {
+          headLength = equalsAtBeginning;
+          MusicList head = new MusicList();
+          for (int k = 0; k < equalsAtBeginning; k++) {
+            head.add(voice.get(k));
+            voices.get(j).remove(0);
           }
-        }
-        
-        if (foundOverlap) {
-          for (int k = 0; k < headLength; k++) {
-            voice.remove(0);
+          pmia.setHead(head);
+          pmia.addPart(voice);
+          pmia.addPart(voices.get(j));
+          voices.remove(voices.get(j));
+          foundOverlap = true;
+        } else if (foundOverlap && equalsAtBeginning == headLength) {
+          for (int k = 0; k < equalsAtBeginning; k++) {
+            voices.get(j).remove(k);
           }
-        } else {
-          fmia.addPart(voice);
+          pmia.addPart(voices.get(j));
+          voices.remove(voices.get(j));
         }
-
-        voices.remove(voice);
       }
-      if (fmia.getParts().size() > 0) brailleVoices.add(fmia);
-      if (pmia.getParts().size() > 0) brailleVoices.add(pmia);
+      
+      if (foundOverlap) {
+        for (int k = 0; k < headLength; k++) {
+          voice.remove(0);
+        }
+      } else {
+        fmia.addPart(voice);
+      }
+
+      voices.remove(voice);
     }
+    if (fmia.getParts().size() > 0) brailleVoices.add(fmia);
+    if (pmia.getParts().size() > 0) brailleVoices.add(pmia);
+
+    valueInterpreters =
+      new ArrayList<ValueInterpreter>(fmia.getParts().size());
+    for (MusicList part: fmia.getParts())
+      valueInterpreters.add(new ValueInterpreter(part, timeSignature));
   }
   public AbstractPitch getFinalPitch() { return finalPitch; }
 
   private BrailleList tail;
   public BrailleList tail() { return tail; }
 
+  /** Collects the signs of a measure while keeping track of the last
+   *  pitch, which decides about octave marks.
+   */
   class State {
-    private int width;
     private AbstractPitch lastPitch;
-    private BrailleList head = new BrailleList();
-    private BrailleList tail = new BrailleList();
-    private boolean hyphenated = false;
+    private final List<BrailleSequence> signs =
+      new ArrayList<BrailleSequence>();
 
-    State(final int width, final AbstractPitch lastPitch) {
-      this.width = width;
+    State(final AbstractPitch lastPitch) {
       this.lastPitch = lastPitch;
     }
     void append(String braille) {
       append(new Text(braille));
     }
-    void append(BrailleSequence braille) {
-      if (head.length() + braille.length() < width && !hyphenated) {
-        head.add(braille);
-      } else {
-        hyphenated = true;
-        tail.add(braille);
-      }
-    }
+    void append(BrailleSequence braille) { signs.add(braille); }
     AbstractPitch getLastPitch() { return lastPitch; }
     void setLastPitch(AbstractPitch lastPitch) { this.lastPitch = lastPitch; }
 
-    BrailleList getHead() { return head; }
-    BrailleList getTail() { return tail; }
+    List<BrailleSequence> getSigns() { return signs; }
+  }
+
+  /** Signs rendered by {@link #prepare} which were not handed out yet */
+  private List<BrailleSequence> prepared = null;
+
+  /** Processes and renders this measure ahead of time.
+   * <p>
+   * None of this depends on the position of the measure on the page, so
+   * it can be done on another thread while earlier measures are laid out.
+   * The next call to {@link #head} uses the result instead of rendering
+   * the measure again.
+   */
+  void prepare() {
+    process();
+    prepared = render();
   }
+  boolean isPrepared() { return prepared != null; }
 
   /** Actually performs the task of transcribing events given the amount
    *  of remaining characters on this line.
    * @see #tail
    */
   public BrailleList head(int width, boolean lastLine) {
-    State state = new State(width,
-                            previous != null? previous.getFinalPitch(): null);
+    List<BrailleSequence> signs = prepared;
+    prepared = null;
+    if (signs == null) signs = render();
+
+    final BrailleList head = new BrailleList();
+    tail = new BrailleList();
+    boolean hyphenated = false;
+    for (BrailleSequence braille: signs) {
+      if (head.length() + braille.length() < width && !hyphenated) {
+        head.add(braille);
+      } else {
+        hyphenated = true;
+        tail.add(braille);
+      }
+    }
+    return head;
+  }
+  private List<BrailleSequence> render() {
+    State state = new State(previous != null? previous.getFinalPitch(): null);
 
     if (fullSimile) {
       state.append(new SimileSign());
@@ -233,23 +282,24 @@ class BrailleMeasure {
           FullMeasureInAccord fmia = (FullMeasureInAccord)brailleVoices.get(i);
           for (int p = 0; p < fmia.getParts().size(); p++) {
             Object splitPoint = null;
-            ValueInterpreter valueInterpreter =
-              new ValueInterpreter(fmia.getParts().get(p), timeSignature);
-            Set<ValueInterpreter.Interpretation>
-              interpretations = valueInterpreter.getInterpretations();
-            if (interpretations.size() > 1) {
+            ValueInterpreter valueInterpreter = valueInterpreters.get(p);
+            final long count = valueInterpreter.getInterpretationCount();
+            if (count > 1) {
               splitPoint = valueInterpreter.getSplitPoint();
               if (splitPoint == null) {
                 StringBuilder sb = new StringBuilder();
 
                 sb.append("Unimplemented: "
-                          + interpretations.size()
+                          + count
                           + " possible interpretations:\n");
+                List<ValueInterpreter.Interpretation>
+                  interpretations = valueInterpreter.getInterpretations();
                 for (ValueInterpreter.Interpretation
                        interpretation:interpretations) {
                   sb.append((interpretation.isCorrect()?" * ":"   ")
                             + interpretation.toString() + "\n");
                 }
+                if (count > interpretations.size()) sb.append("   ...\n");
                 LOG.warning(sb.toString());
               }
             }
@@ -283,8 +333,7 @@ class BrailleMeasure {
           && !((FullMeasureInAccord)brailleVoices.get(0)).isInAccord())
         finalPitch = state.getLastPitch();
     }
-    tail = state.getTail();
-    return state.getHead();
+    return state.getSigns();
   }
   void printNoteList(MusicList musicList, State state, Object splitPoint) {
     for (Event element:musicList) {
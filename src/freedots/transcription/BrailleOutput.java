@@ -0,0 +1,108 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots.transcription;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import freedots.braille.BrailleEncoding;
+import freedots.braille.BrailleList;
+import freedots.braille.BrailleSequence;
+
+/** Writes the elements of a transcription to a character stream.
+ * <p>
+ * Elements are written one at a time, so that output can start before the
+ * transcription is complete.
+ */
+final class BrailleOutput {
+  private final Writer writer;
+  private final BrailleEncoding encoding;
+  private final BrailleList root;
+  private boolean empty = true;
+
+  /** North American Braille Computer Code, indexed by the dot bits of the
+   *  Unicode braille pattern.
+   */
+  private static final String BRF =
+    " A1B'K2L@CIF/MSP\"E3H9O6R^DJG>NTQ,*5<-U8V.%[$+X!&;:4\\0Z7(_?W]#Y)=";
+
+  /**
+   * @param root is the list which will contain all written elements
+   */
+  BrailleOutput(final Writer writer, final BrailleEncoding encoding,
+                final BrailleList root) {
+    this.writer = writer;
+    this.encoding = encoding;
+    this.root = root;
+  }
+
+  void begin() throws IOException {
+    if (encoding == BrailleEncoding.HTML) HTMLOutput.writeHeader(writer);
+  }
+  /** Writes the next element of the root list.
+   */
+  void write(final BrailleSequence braille) throws IOException {
+    switch (encoding) {
+    case HTML:
+      if (empty) HTMLOutput.writeStartTag(root, writer);
+      HTMLOutput.writeElement(braille, writer);
+      break;
+    case NorthAmericanBrailleComputerCode:
+      writeBRF(braille);
+      break;
+    case UnicodeBraille:
+    default:
+      writeUnicode(braille);
+    }
+    empty = false;
+  }
+  void flush() throws IOException { writer.flush(); }
+  void end() throws IOException {
+    if (encoding == BrailleEncoding.HTML) {
+      if (empty) HTMLOutput.writeElements(root, writer);
+      else HTMLOutput.writeEndTag(writer);
+      HTMLOutput.writeFooter(writer);
+    }
+    writer.flush();
+  }
+
+  private void writeUnicode(final BrailleSequence braille) throws IOException {
+    if (braille instanceof BrailleList) {
+      for (BrailleSequence element: (BrailleList)braille)
+        writeUnicode(element);
+    } else {
+      writer.write(braille.toString());
+    }
+  }
+  private void writeBRF(final BrailleSequence braille) throws IOException {
+    if (braille instanceof BrailleList) {
+      for (BrailleSequence element: (BrailleList)braille) writeBRF(element);
+    } else {
+      final String string = braille.toString();
+      for (int i = 0; i < string.length(); i++) {
+        final char c = string.charAt(i);
+        writer.write(c >= 0X2800 && c < 0X2840? BRF.charAt(c - 0X2800): c);
+      }
+    }
+  }
+}
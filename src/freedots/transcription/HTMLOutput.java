@@ -22,18 +22,9 @@
  */
 package freedots.transcription;
 
+import java.io.IOException;
 import java.io.StringWriter;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.DOMImplementation;
-import org.w3c.dom.Document;
-import org.w3c.dom.DocumentType;
-import org.w3c.dom.Element;
+import java.io.Writer;
 
 import freedots.Options;
 import freedots.braille.BrailleList;
@@ -42,100 +33,162 @@ import freedots.braille.NewLine;
 import freedots.braille.Sign;
 import freedots.musicxml.Score;
 
+/** Converts braille to XHTML.
+ * <p>
+ * The markup is written directly to a character stream, so that a document
+ * can be produced piece by piece while the transcription proceeds.  The
+ * output is the same a DOM serializer gives for the equivalent XHTML tree.
+ */
 public final class HTMLOutput {
   private HTMLOutput() {}
 
-  public static String convert(BrailleList braille) throws javax.xml.parsers.ParserConfigurationException {
-    DOMImplementation dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
-    DocumentType docType =
-      dom.createDocumentType("html", "-//W3C//DTD XHTML 1.0 Strict//EN",
-                             "http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd");
-    Document document = dom.createDocument("http://www.w3.org/1999/xhtml",
-                                           "html", docType);
-    Element html = document.getDocumentElement();
-    Element head = document.createElement("head");
-    Element title = document.createElement("title");
-    head.appendChild(title);
+  private static final String NL = System.getProperty("line.separator");
 
-    Element meta = document.createElement("meta");
-    meta.setAttribute("content", "text/html; charset=utf-8");
-    meta.setAttribute("http-equiv", "Content-Type");
-    head.appendChild(meta);
-    Element style = document.createElement("style");
-    style.setAttribute("type", "text/css");
-    style.setAttribute("media", "all");
-    style.setTextContent(
+  public static String convert(BrailleList braille) {
+    final StringWriter writer = new StringWriter();
+    try {
+      writeHeader(writer);
+      writeElements(braille, writer);
+      writeFooter(writer);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return writer.toString();
+  }
+
+  /** Writes everything up to the container of the braille.
+   */
+  static void writeHeader(final Writer writer) throws IOException {
+    writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>"
+                 + "<!DOCTYPE html PUBLIC \"-//W3C//DTD XHTML 1.0 Strict//EN\" "
+                 + "\"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd\">"
+                 + NL
+                 + "<html xmlns=\"http://www.w3.org/1999/xhtml\"><head><title />"
+                 + "<meta content=\"text/html; charset=utf-8\" "
+                 + "http-equiv=\"Content-Type\" />"
+                 + "<style media=\"all\" type=\"text/css\">");
+    writeText(
 ".Sign:hover { margin: -1px; border-style: solid; border-width: 1px; }\n" +
 ".freedots_braille_AccidentalSign { color: red; }\n" + 
 ".freedots_braille_Dot { color: #5FAAB1; }\n" +
 ".freedots_braille_OctaveSign { color: pink; }\n" +
-".freedots_braille_PitchAndValueSign { color: blue; }\n");
-    head.appendChild(style);
-    html.appendChild(head);
-
-    Element body = document.createElement("body");
-    Element div = document.createElement("div");
-    appendHTML(braille, div);
-    body.appendChild(div);
-
-    Element p = document.createElement("p");
-    Element a = document.createElement("a");
-    Element img = document.createElement("img");
-    img.setAttribute("src", "http://www.w3.org/Icons/valid-xhtml10");
-    img.setAttribute("alt", "Valid XHTML 1.0 Strict");
-    img.setAttribute("height", "31");
-    img.setAttribute("width", "88");
-    a.setAttribute("href", "http://validator.w3.org/check?uri=referer");
-    a.appendChild(img);
-    p.appendChild(a);
-    body.appendChild(p);
-
-    html.appendChild(body);
-
-    DOMSource domSource = new DOMSource(document);
-    StringWriter stringWriter = new StringWriter();
-    StreamResult resultStream = new StreamResult(stringWriter);
-    TransformerFactory transformerFactory = TransformerFactory.newInstance();
-    try {
-      Transformer transformer = transformerFactory.newTransformer();
-      transformer.setOutputProperty(OutputKeys.DOCTYPE_PUBLIC,
-                                    docType.getPublicId());
-      transformer.setOutputProperty(OutputKeys.DOCTYPE_SYSTEM,
-                                    docType.getSystemId());
-      transformer.setOutputProperty(OutputKeys.INDENT, "no");
-      try {
-        transformer.transform(domSource, resultStream);
+".freedots_braille_PitchAndValueSign { color: blue; }\n", writer);
+    writer.write("</style></head><body><div>");
+  }
+  /** Writes everything after the container of the braille.
+   */
+  static void writeFooter(final Writer writer) throws IOException {
+    writer.write("</div><p><a href=\"http://validator.w3.org/check?uri=referer\">"
+                 + "<img alt=\"Valid XHTML 1.0 Strict\" height=\"31\" "
+                 + "src=\"http://www.w3.org/Icons/valid-xhtml10\" width=\"88\" />"
+                 + "</a></p></body></html>");
+  }
 
-        return stringWriter.toString();
-      } catch (javax.xml.transform.TransformerException e) {
-        e.printStackTrace();
-      }
-    } catch (javax.xml.transform.TransformerConfigurationException e) {
-      e.printStackTrace();
+  /** Writes a list with all its elements.
+   */
+  static void writeElements(final BrailleList braille, final Writer writer)
+    throws IOException {
+    writeSpan(braille, "", writer);
+    if (braille.isEmpty()) {
+      writer.write(" />");
+    } else {
+      writer.write('>');
+      for (BrailleSequence sequence: braille) writeElement(sequence, writer);
+      writeEndTag(writer);
     }
-    return null;
+  }
+  /** Writes the start tag of a non-empty list, but none of its elements.
+   * @see #writeElement
+   * @see #writeEndTag
+   */
+  static void writeStartTag(final BrailleList braille, final Writer writer)
+    throws IOException {
+    writeSpan(braille, "", writer);
+    writer.write('>');
+  }
+  static void writeEndTag(final Writer writer) throws IOException {
+    writer.write("</span>");
+  }
+  /** Writes a single element of a list.
+   */
+  static void writeElement(final BrailleSequence sequence, final Writer writer)
+    throws IOException {
+    if (sequence instanceof NewLine) {
+      writer.write("<br />");
+    } else if (sequence instanceof Sign) {
+      final String string =
+        sequence.toString().replaceAll(" ", String.valueOf((char)160));
+      writeSpan(sequence, " Sign", writer);
+      if (string.length() == 0) {
+        writer.write(" />");
+      } else {
+        writer.write('>');
+        writeText(string, writer);
+        writeEndTag(writer);
+      }
+    } else writeElements((BrailleList)sequence, writer);
   }
 
-  static void appendHTML(BrailleList braille, Element element) {
-    Element span = element.getOwnerDocument().createElement("span");
-    span.setAttribute("title", braille.getDescription());
-    span.setAttribute("class", braille.getClass().getName().replaceAll("\\.", "_"));
+  private static void writeSpan(final BrailleSequence sequence,
+                                final String classSuffix,
+                                final Writer writer) throws IOException {
+    writer.write("<span class=\"");
+    writeAttribute(sequence.getClass().getName().replaceAll("\\.", "_")
+                   + classSuffix, writer);
+    writer.write("\" title=\"");
+    writeAttribute(sequence.getDescription(), writer);
+    writer.write('"');
+  }
 
-    for (BrailleSequence sequence: braille) {
-      if (sequence instanceof NewLine) {
-        Element br = element.getOwnerDocument().createElement("br");
-        span.appendChild(br);
-      } else if (sequence instanceof Sign) {
-        Element container = element.getOwnerDocument().createElement("span");
-        container.setAttribute("title", sequence.getDescription());
-        container.setAttribute("class", sequence.getClass().getName().replaceAll("\\.", "_") + " Sign");
-        String string = sequence.toString().replaceAll(" ", String.valueOf((char)160));
-        container.setTextContent(string);
-        span.appendChild(container);
-      } else appendHTML((BrailleList)sequence, span);
+  /* Escaping follows what the XML serializer of the JDK does */
+  private static void writeText(final String text, final Writer writer)
+    throws IOException {
+    escape(text, false, writer);
+  }
+  private static void writeAttribute(final String value, final Writer writer)
+    throws IOException {
+    escape(value, true, writer);
+  }
+  private static void escape(final String string, final boolean attribute,
+                             final Writer writer) throws IOException {
+    final int length = string.length();
+    for (int i = 0; i < length; i++) {
+      final char c = string.charAt(i);
+      switch (c) {
+      case '&': writer.write("&amp;"); break;
+      case '<': writer.write("&lt;"); break;
+      case '>': writer.write("&gt;"); break;
+      case '"':
+        if (attribute) writer.write("&quot;"); else writer.write(c);
+        break;
+      case '\n':
+        if (attribute) writer.write("&#10;"); else writer.write(NL);
+        break;
+      case '\r': writer.write("&#13;"); break;
+      case '\t':
+        if (attribute) writer.write("&#9;"); else writer.write(c);
+        break;
+      default:
+        if (Character.isHighSurrogate(c) && i + 1 < length
+            && Character.isLowSurrogate(string.charAt(i + 1))) {
+          writeCharacterReference(string.codePointAt(i), writer);
+          i++;
+        } else if (c < 0x20 || (!attribute && c >= 0x7F && c <= 0x9F)) {
+          writeCharacterReference(c, writer);
+        } else {
+          writer.write(c);
+        }
+      }
     }
-    element.appendChild(span);
   }
+  private static void writeCharacterReference(final int codePoint,
+                                              final Writer writer)
+    throws IOException {
+    writer.write("&#");
+    writer.write(Integer.toString(codePoint));
+    writer.write(';');
+  }
+
   public static void main(String[] args) {
     try {
       Score score = new Score("freedots/musicxml/bwv1013-1.xml");
@@ -0,0 +1,213 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots.transcription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import freedots.braille.BrailleEncoding;
+import freedots.musicxml.Score;
+
+/** Transcribes a score lazily, one page at a time.
+ * <p>
+ * The transcription strategies were not made resumable.  A thread of its
+ * own stands in for that: it is started when the first page is requested
+ * and suspended after every page until the next one is requested.  The
+ * transcriber must not be used otherwise until the last page has been
+ * returned or the iterator was {@link #close closed}.
+ * <p>
+ * The thread only refers to the iterator weakly.  If an iterator is
+ * abandoned without being closed, its thread ends once the iterator has
+ * been garbage collected.
+ * @see Transcriber#pages
+ */
+public final class PageIterator implements Iterator<String> {
+  /** Marks the end of the transcription in the queue of pages.
+   */
+  private static final Object END = new Object();
+  /** How often a suspended thread checks if its iterator is still in use.
+   */
+  private static final long POLL_SECONDS = 1;
+
+  private final Transcriber transcriber;
+  private final Score score;
+  private final Handoff handoff = new Handoff(this);
+  private Thread thread = null;
+  private Object next = null;
+  private boolean finished = false;
+
+  PageIterator(final Transcriber transcriber, final Score score) {
+    this.transcriber = transcriber;
+    this.score = score;
+  }
+
+  /** Checks if there is another page, transcribing it if necessary.
+   */
+  public boolean hasNext() {
+    if (next == null && !finished) {
+      if (thread == null) {
+        thread = new Thread(new Transcription(transcriber, score, handoff),
+                            "freedots-pages");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      handoff.requests.release();
+      try {
+        next = handoff.pages.take();
+      } catch (InterruptedException e) {
+        close();
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while transcribing", e);
+      }
+      if (next == END || next instanceof Throwable) {
+        final Object result = next;
+        next = null;
+        finished = true;
+        if (result instanceof RuntimeException) throw (RuntimeException)result;
+        if (result instanceof Error) throw (Error)result;
+      }
+    }
+    return next != null;
+  }
+  /** Returns the braille of the next page, including its page number.
+   */
+  public String next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    final String page = (String)next;
+    next = null;
+    return page;
+  }
+  public void remove() { throw new UnsupportedOperationException(); }
+
+  /** Stops transcription if not all pages have been requested.
+   */
+  public void close() {
+    finished = true;
+    next = null;
+    if (thread != null) thread.interrupt();
+  }
+
+  /** What the iterator and the transcribing thread share.
+   */
+  private static final class Handoff {
+    private final Semaphore requests = new Semaphore(0);
+    private final BlockingQueue<Object> pages =
+      new SynchronousQueue<Object>();
+    private final WeakReference<PageIterator> iterator;
+
+    Handoff(final PageIterator iterator) {
+      this.iterator = new WeakReference<PageIterator>(iterator);
+    }
+
+    /** Waits until the next page is requested.
+     * @throws InterruptedException if the iterator was closed or abandoned
+     */
+    void awaitRequest() throws InterruptedException {
+      while (!requests.tryAcquire(POLL_SECONDS, TimeUnit.SECONDS))
+        if (iterator.get() == null) throw new InterruptedException();
+    }
+  }
+
+  /** Runs the transcriber in the thread of an iterator.
+   * <p>
+   * This must not refer to the iterator, otherwise an abandoned iterator
+   * would be kept alive by its own thread.
+   */
+  private static final class Transcription implements Runnable {
+    private final Transcriber transcriber;
+    private final Score score;
+    private final Handoff handoff;
+
+    Transcription(final Transcriber transcriber, final Score score,
+                  final Handoff handoff) {
+      this.transcriber = transcriber;
+      this.score = score;
+      this.handoff = handoff;
+    }
+
+    public void run() {
+      Object last = END;
+      try {
+        handoff.awaitRequest();
+        transcriber.setScore(score, new PageWriter(handoff),
+                             BrailleEncoding.UnicodeBraille);
+      } catch (InterruptedException e) {
+        return;
+      } catch (InterruptedIOException e) {
+        return;
+      } catch (CancellationException e) {
+        return;
+      } catch (IOException e) {
+        throw new AssertionError(e);
+      } catch (RuntimeException e) {
+        last = e;
+      } catch (Error e) {
+        last = e;
+      }
+      try {
+        handoff.pages.put(last);
+      } catch (InterruptedException e) {
+      }
+    }
+  }
+
+  /** Hands over the text written since the last flush as a page.
+   * <p>
+   * The transcriber flushes after every page and at the very end.
+   */
+  private static final class PageWriter extends Writer {
+    private final Handoff handoff;
+    private final StringBuilder page = new StringBuilder();
+
+    PageWriter(final Handoff handoff) { this.handoff = handoff; }
+
+    @Override public void write(final char[] buffer, final int offset,
+                                final int length) {
+      page.append(buffer, offset, length);
+    }
+    @Override public void write(final String string) {
+      page.append(string);
+    }
+    @Override public void flush() throws IOException {
+      if (page.length() > 0) {
+        try {
+          handoff.pages.put(page.toString());
+          page.setLength(0);
+          handoff.awaitRequest();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+      }
+    }
+    @Override public void close() {}
+  }
+}
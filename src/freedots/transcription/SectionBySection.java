@@ -25,6 +25,8 @@ package freedots.transcription;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import freedots.braille.AlternativeEnding;
 import freedots.braille.ArtificialWholeRest;
@@ -68,6 +70,7 @@ class SectionBySection implements Strategy {
   private Options options = null;
   private Score score = null;
   private Transcriber transcriber = null;
+  private boolean newSystemEndsSection;
 
   /** Main entry point to invoke implemented transcription Strategy.
    *
@@ -77,37 +80,113 @@ class SectionBySection implements Strategy {
     this.transcriber = transcriber;
     options = transcriber.getOptions();
     score = transcriber.getScore();
+    newSystemEndsSection =
+      options.getNewSystemEndsSection()
+      && score.encodingSupports("print", "new-system", true);
 
-    for (Part part: score.getParts()) {
-      String name = part.getName();
-      if (name != null && !name.isEmpty()) transcriber.printLine(name);
-      List<Direction> directives = part.getDirectives();
-      String directiveText = "";
-      if (directives.size() == 1) {
-        final Direction directive = directives.get(0);
-        directiveText = directives.get(0).getWords().trim() + " ";
-        transcriber.getAlreadyPrintedDirections().add(directive);
+    final List<Part> parts = score.getParts();
+    List<Future<PartFragment>> fragments = null;
+    if (options.getParallelTranscription() && score.hasIndependentParts()) {
+      /* Directives have to be known before measures are rendered */
+      for (Part part: parts) {
+        final Direction directive = getDirective(part);
+        if (directive != null)
+          transcriber.getAlreadyPrintedDirections().add(directive);
       }
-      BrailleTimeSignature bTimeSig =
-        new BrailleTimeSignature(part.getTimeSignature());
-      if (!directiveText.isEmpty()) {
-        transcriber.printString(new Text(directiveText) {
-                                  @Override public String getDescription() {
-                                    return "A directive at the beginning";
-                                  }
-                                });
+      fragments = new ArrayList<Future<PartFragment>>(parts.size());
+      for (final Part part: parts) {
+        fragments.add(Transcriber.getExecutor().submit(
+          new Callable<PartFragment>() {
+            public PartFragment call() { return new PartFragment(part); }
+          }));
+      }
+    }
+
+    try {
+      for (int partIndex = 0; partIndex < parts.size(); partIndex++)
+        transcribePart(parts.get(partIndex),
+                       fragments != null
+                       ? Transcriber.await(fragments.get(partIndex)): null);
+    } finally {
+      if (fragments != null)
+        for (Future<PartFragment> fragment: fragments) fragment.cancel(true);
+    }
+  }
+
+  /** Lays out a part.
+   * @param fragment holds the measures of the part rendered ahead of time,
+   *        or null if they are to be rendered while laying them out
+   */
+  private void transcribePart(final Part part, final PartFragment fragment) {
+    String name = part.getName();
+    if (name != null && !name.isEmpty()) transcriber.printLine(name);
+    final Direction directive = getDirective(part);
+    String directiveText = "";
+    if (directive != null) {
+      directiveText = directive.getWords().trim() + " ";
+      if (fragment == null)
+        transcriber.getAlreadyPrintedDirections().add(directive);
+    }
+    BrailleTimeSignature bTimeSig =
+      new BrailleTimeSignature(part.getTimeSignature());
+    if (!directiveText.isEmpty()) {
+      transcriber.printString(new Text(directiveText) {
+                                @Override public String getDescription() {
+                                  return "A directive at the beginning";
+                                }
+                              });
+    }
+    // TODO: FIXME
+    transcriber.printString(new BrailleKeySignature(part.getKeySignature()));
+    transcriber.printString(bTimeSig);
+    transcriber.newLine();
+
+    List<Section> sections =
+      fragment != null? fragment.sections: getSections(part);
+    for (int index = 0; index < sections.size(); index++)
+      transcribeSection(part, sections.get(index), index + 1,
+                        sections.size() > 1,
+                        fragment != null? fragment.measures.get(index): null);
+    if (transcriber.getCurrentColumn() > 0) transcriber.newLine();
+    transcriber.newLine();
+  }
+
+  /** Returns the directive printed at the beginning of a part.
+   * @return null if the part does not have exactly one directive
+   */
+  private static Direction getDirective(final Part part) {
+    final List<Direction> directives = part.getDirectives();
+    return directives.size() == 1? directives.get(0): null;
+  }
+
+  /** The sections of a part and their measures, rendered without knowing
+   *  where they will end up on the page.
+   * <p>
+   * Parts can be rendered in parallel if they do not share a DOM.  Line
+   * and page breaks are decided afterwards, when the fragments are laid
+   * out in order, so the result is the same as transcribing sequentially.
+   */
+  private final class PartFragment {
+    private final List<Section> sections;
+    /** The measures of every staff, indexed by section and staff */
+    private final List<List<List<BrailleMeasure>>> measures;
+
+    PartFragment(final Part part) {
+      sections = getSections(part);
+      measures = new ArrayList<List<List<BrailleMeasure>>>(sections.size());
+      for (Section section: sections) {
+        final int staffCount = section.getStaffCount();
+        final List<List<BrailleMeasure>> staves =
+          new ArrayList<List<BrailleMeasure>>(staffCount);
+        for (int staffIndex = 0; staffIndex < staffCount; staffIndex++) {
+          final List<BrailleMeasure> staffMeasures =
+            createMeasures(section.getStaff(staffIndex),
+                           getChordDirection(staffCount, staffIndex));
+          for (BrailleMeasure measure: staffMeasures) measure.prepare();
+          staves.add(staffMeasures);
+        }
+        measures.add(staves);
       }
-      // TODO: FIXME
-      transcriber.printString(new BrailleKeySignature(part.getKeySignature()));
-      transcriber.printString(bTimeSig);
-      transcriber.newLine();
-
-      List<Section> sections = getSections(part);
-      for (Section section: sections)
-        transcribeSection(part, section, sections.indexOf(section) + 1,
-                                         sections.size() > 1);
-      if (transcriber.getCurrentColumn() > 0) transcriber.newLine();
-      transcriber.newLine();
     }
   }
 
@@ -116,7 +195,8 @@ class SectionBySection implements Strategy {
    */
   private void transcribeSection(final Part part, final Section section,
                                  final int sectionNumber,
-                                 final boolean numbering) {
+                                 final boolean numbering,
+                                 final List<List<BrailleMeasure>> measures) {
     final int staffCount = section.getStaffCount();
     for (int staffIndex = 0; staffIndex < staffCount; staffIndex++) {
       final Staff staff = section.getStaff(staffIndex);
@@ -133,20 +213,20 @@ class SectionBySection implements Strategy {
         transcriber.indentTo(2);
       }
 
-      int chordDirection = -1;
       if (staffCount == 1 && staff.containsHarmony()) {
         transcriber.printString(new MusicPart());
       } else if (staffCount == 2) {
         if (staffIndex == 0) {
           transcriber.printString(new RightHandPart());
-          chordDirection = -1;
         } else if (staffIndex == 1) {
           transcriber.printString(new LeftHandPart());
-          chordDirection = 1;
         }
       }
 
-      transcribeMusic(staff, chordDirection);
+      transcribeMusic(staff, measures != null? measures.get(staffIndex)
+                      : createMeasures(staff,
+                                       getChordDirection(staffCount,
+                                                         staffIndex)));
 
       if (staff.containsHarmony()) {
         if (transcriber.getCurrentColumn() > 0) transcriber.newLine();
@@ -158,11 +238,40 @@ class SectionBySection implements Strategy {
     }
   }
 
-  private void transcribeMusic(Staff staff, final int chordDirection) {
+  /** Left hand chords are written from the bottom up.
+   */
+  private static int getChordDirection(final int staffCount,
+                                       final int staffIndex) {
+    return staffCount == 2 && staffIndex == 1? 1: -1;
+  }
+
+  /** Splits a staff into measures, one for every end bar.
+   */
+  private List<BrailleMeasure> createMeasures(final Staff staff,
+                                              final int chordDirection) {
+    final List<BrailleMeasure> measures = new ArrayList<BrailleMeasure>();
     BrailleMeasure measure = new BrailleMeasure(transcriber);
     measure.setChordDirection(chordDirection);
     measure.setVoiceDirection(chordDirection);
 
+    for (Event event: staff) {
+      if (event instanceof StartBar) {
+        measure.setTimeSignature(((StartBar)event).getTimeSignature());
+      } else if (event instanceof EndBar) {
+        measures.add(measure);
+        measure = new BrailleMeasure(transcriber, measure);
+        measure.setChordDirection(chordDirection);
+        measure.setVoiceDirection(chordDirection);
+      } else if (!(event instanceof KeyChange)) {
+        measure.add(event);
+      }
+    }
+    return measures;
+  }
+
+  private void transcribeMusic(final Staff staff,
+                               final List<BrailleMeasure> measures) {
+    final Iterator<BrailleMeasure> measureIterator = measures.iterator();
     StartBar startBar = null;
     KeySignature currentSignature =
       staff.getKeySignature(staff.get(0).getMoment());
@@ -173,7 +282,6 @@ class SectionBySection implements Strategy {
 
       if (event instanceof StartBar) {
         startBar = (StartBar)event;
-        measure.setTimeSignature(startBar.getTimeSignature());
       } else if (event instanceof KeyChange) {
         KeyChange kc = (KeyChange)event;
         if (!kc.getKeySignature().equals(currentSignature)) {
@@ -184,6 +292,7 @@ class SectionBySection implements Strategy {
         }
       } else if (event instanceof EndBar) {
         EndBar rightBar = (EndBar)event;
+        BrailleMeasure measure = measureIterator.next();
         int charactersLeft = transcriber.getRemainingColumns();
         if (charactersLeft <= 2) {
           transcriber.newLine();
@@ -200,7 +309,7 @@ class SectionBySection implements Strategy {
         }
 
         boolean lastLine = transcriber.isLastLine();
-        measure.process();
+        if (!measure.isPrepared()) measure.process();
 
         BrailleList head = measure.head(charactersLeft, lastLine);
         BrailleList tail = measure.tail();
@@ -223,12 +332,6 @@ class SectionBySection implements Strategy {
           transcriber.printString(new DoubleBarSign());
 
         if (!rightBar.getEndOfMusic()) transcriber.spaceOrNewLine();
-
-        measure = new BrailleMeasure(transcriber, measure);
-        measure.setChordDirection(chordDirection);
-        measure.setVoiceDirection(chordDirection);
-      } else {
-        measure.add(event);
       }
     }
   }
@@ -415,10 +518,6 @@ class SectionBySection implements Strategy {
     int index = 0;
     int measureCount = 0;
 
-    final boolean newSystemEndsSection =
-      options.getNewSystemEndsSection()
-      && score.encodingSupports("print", "new-system", true);
-
     while (true) {
       while (index < musicList.size()) {
         Event event = musicList.get(index++);
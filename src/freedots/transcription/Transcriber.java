@@ -22,14 +22,21 @@
  */
 package freedots.transcription;
 
-import java.text.CharacterIterator;
-import java.text.StringCharacterIterator;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import freedots.DaemonThreadFactory;
 import freedots.Options;
 
-import freedots.Braille;
 import freedots.braille.Sign;
 import freedots.braille.BrailleEncoding;
 import freedots.braille.BrailleList;
@@ -60,11 +67,95 @@ public final class Transcriber {
     clear();
     transcribe();
   }
+  /** Transcribe the given score to braille lazily, one page at a time.
+   * <p>
+   * Pages are only transcribed when requested from the returned iterator.
+   * Once all pages have been returned, this transcriber holds the
+   * complete transcription, just as if {@link #setScore} had been called.
+   * @param score is the abstract representation of the music to transcribe
+   */
+  public PageIterator pages(final Score score) {
+    return new PageIterator(this, score);
+  }
+  /** Transcribe the given score to braille and write the result while
+   *  transcribing.
+   * <p>
+   * Every page is written and flushed as soon as it is complete, so that
+   * the beginning of a large transcription is available early.
+   * @param score is the abstract representation of the music to transcribe
+   * @param writer receives the transcription, it is flushed but not closed
+   * @param encoding specifies the braille encoding to use
+   */
+  public void setScore(final Score score,
+                       final Writer writer, final BrailleEncoding encoding)
+    throws IOException {
+    this.score = score;
+    clear();
+    output = new BrailleOutput(writer, encoding, strings);
+    try {
+      output.begin();
+      transcribe();
+      writePending();
+      output.end();
+    } catch (OutputException e) {
+      throw e.getCause();
+    } finally {
+      output = null;
+      pendingOutput.clear();
+    }
+  }
 
   private Options options;
   Options getOptions() { return options; }
 
+  private static ExecutorService executor = null;
+  /** Returns the pool which transcription strategies use to render
+   *  independent parts of a score in parallel.
+   */
+  static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = DaemonThreadFactory.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), "transcription");
+    }
+    return executor;
+  }
+  /** Waits for a task submitted to {@link #getExecutor}.
+   * @throws CancellationException if the current thread is interrupted
+   */
+  static <T> T await(final Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      throw cancelled(e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      if (cause instanceof Error) throw (Error)cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private static CancellationException cancelled(final Throwable cause) {
+    final CancellationException exception =
+      new CancellationException("Interrupted while transcribing");
+    exception.initCause(cause);
+    return exception;
+  }
+
   private BrailleList strings;
+  /** Receives pages while transcribing, if requested */
+  private BrailleOutput output;
+  /** Elements which are not written to output yet */
+  private final List<BrailleSequence> pendingOutput =
+    new ArrayList<BrailleSequence>();
+  /** Maps score objects to the index of the first character generated
+   *  due to them.  Filled while signs are printed.
+   */
+  private Map<Object, Integer> scoreObjectIndex;
+  /** The length of strings, asking it would recompute its offsets */
+  private int length;
   private int characterCount;
   private int lineCount;
   private int pageNumber;
@@ -105,6 +196,23 @@ public final class Transcriber {
   public int getIndexOfScoreObject(final Object object) {
     return strings.getIndexOfScoreObject(object);
   }
+  /** Find the starting index of the character sequence for Object in
+   *  constant time.
+   * <p>
+   * Unlike {@link #getIndexOfScoreObject} this does not search the signs,
+   * it uses an index built during transcription.  Changes made to
+   * {@link #getSigns} afterwards are not reflected.
+   * @param object the score object to search in the transcribed text.
+   * @return the index of the first character that was generated due to
+   *         object, or -1 if object was not transcribed
+   */
+  public int lookupIndexOfScoreObject(final Object object) {
+    if (object == null)
+      throw new NullPointerException("Trying to search for null");
+
+    final Integer index = scoreObjectIndex.get(object);
+    return index != null? index: -1;
+  }
   /** Returns the <code>char</code> value at the specified index.
    * @param index the index of the <code>char</code> value to be returned.
    * @return the <code>char</code> value at the specified index.
@@ -122,6 +230,8 @@ public final class Transcriber {
   }
   private void clear() {
     strings = new BrailleList();
+    length = 0;
+    scoreObjectIndex = new IdentityHashMap<Object, Integer>();
     characterCount = 0;
     lineCount = 0;
     pageNumber = 1;
@@ -201,7 +311,7 @@ public final class Transcriber {
   }
 
   void printString(final BrailleSequence braille) {
-    strings.add(braille);
+    append(braille);
     characterCount += braille.length();
   }
   void printLine(final String text) {
@@ -227,27 +337,80 @@ public final class Transcriber {
     else newLine();
   }
   void newLine() {
-    strings.add(new NewLine());
+    /* Interrupting the transcribing thread abandons the transcription */
+    if (Thread.currentThread().isInterrupted()) throw cancelled(null);
+    append(new NewLine());
     characterCount = 0;
     lineCount += 1;
     if (lineCount == options.getPageHeight()) {
       BrailleSequence pageIndicator = new UpperNumber(pageNumber++);
       indentTo(options.getPageWidth() - pageIndicator.length());
-      strings.add(pageIndicator);
-      strings.add(new NewLine());
+      append(pageIndicator);
+      append(new NewLine());
       characterCount = 0;
       lineCount = 0;
+      writePending();
     }
   }
   void indentTo(final int column) {
     int difference = column - characterCount;
     while (difference > 0) {
-      strings.add(new Space());
+      append(new Space());
       characterCount += 1;
       difference -= 1;
     }
   }
 
+  /** Appends to the transcription and records the score objects of the
+   *  new signs.
+   */
+  private void append(final BrailleSequence braille) {
+    final int size = strings.size();
+    strings.add(braille);
+    /* A guide dot might have been inserted before braille */
+    final BrailleSequence guideDot =
+      strings.size() > size + 1? strings.get(size): null;
+    if (guideDot != null) length += guideDot.length();
+    addToIndex(braille, length);
+    length += braille.length();
+    if (output != null) {
+      if (guideDot != null) pendingOutput.add(guideDot);
+      pendingOutput.add(braille);
+    }
+  }
+  private void writePending() {
+    if (output != null) {
+      try {
+        for (BrailleSequence braille: pendingOutput) output.write(braille);
+        output.flush();
+      } catch (IOException e) {
+        throw new OutputException(e);
+      }
+      pendingOutput.clear();
+    }
+  }
+  /** Carries an I/O error out of the transcription strategies.
+   */
+  @SuppressWarnings("serial")
+  private static final class OutputException extends RuntimeException {
+    OutputException(final IOException cause) { super(cause); }
+    @Override public IOException getCause() {
+      return (IOException)super.getCause();
+    }
+  }
+  private void addToIndex(final BrailleSequence braille, final int index) {
+    final Object object = braille.getScoreObject();
+    if (object != null && !scoreObjectIndex.containsKey(object))
+      scoreObjectIndex.put(object, index);
+    if (braille instanceof BrailleList) {
+      int elementIndex = index;
+      for (BrailleSequence element: (BrailleList)braille) {
+        addToIndex(element, elementIndex);
+        elementIndex += element.length();
+      }
+    }
+  }
+
   /** Gets the transcription result as a hierarchy of objects.
    * <p>
    * This could be used to extract metadata about the signs used during
@@ -265,35 +428,27 @@ public final class Transcriber {
    * @return the string representation of the given encoding
    */
   public String toString(final BrailleEncoding encoding) {
-    final String string = strings.toString();
-    switch (encoding) {
-    case NorthAmericanBrailleComputerCode: {
-      final StringBuilder stringBuilder = new StringBuilder();
-      final CharacterIterator iterator = new StringCharacterIterator(string);
-      for(char c = iterator.first(); c != CharacterIterator.DONE;
-          c = iterator.next()) {
-        final Character ch = new Character(c);
-        if (Braille.BRF_TABLE.containsKey(ch)) {
-          final Character mapped = Braille.BRF_TABLE.get(ch);
-          stringBuilder.append(mapped);
-        } else {
-          stringBuilder.append(c);
-        }
-      }
-      return stringBuilder.toString();
-    }
-    case HTML: {
-      try {
-        return HTMLOutput.convert(strings);
-      } catch (Exception e) {
-        e.printStackTrace();
-      }
-      return null;
-    }
-    case UnicodeBraille:
-    default:
-      return string;
+    if (encoding == BrailleEncoding.UnicodeBraille) return strings.toString();
+
+    final StringWriter writer = new StringWriter();
+    try {
+      write(writer, encoding);
+    } catch (IOException e) {
+      throw new AssertionError(e);
     }
+    return writer.toString();
+  }
+  /** Writes the transcription result to a character stream.
+   *
+   * @param writer receives the transcription, it is flushed but not closed
+   * @param encoding specifies the braille encoding to use.
+   */
+  public void write(final Writer writer, final BrailleEncoding encoding)
+    throws IOException {
+    final BrailleOutput output = new BrailleOutput(writer, encoding, strings);
+    output.begin();
+    for (BrailleSequence braille: strings) output.write(braille);
+    output.end();
   }
   /** Converts transcription result to a plain string.
    *
@@ -23,12 +23,16 @@
 package freedots.transcription;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
-import freedots.math.Fraction;
+import freedots.math.PackedFraction;
+import freedots.math.PowerOfTwo;
 import freedots.music.AugmentedPowerOfTwo;
 import freedots.music.Event;
 import freedots.music.MusicList;
@@ -45,33 +49,59 @@ import freedots.musicxml.Note;
  *
  * Class <code>ValueInterpreter</code> calculates the possible interpretations
  * of a list of notes relative to a given time signature.
+ * <p>
+ * Interpretations are counted with a search over (note index, remaining
+ * duration) which remembers the result of every state it has visited,
+ * so the work grows with the number of distinct states instead of the
+ * number of interpretations.  Measures with the same rhythm are only
+ * analysed once.
  */
 class ValueInterpreter {
-  private Set<Interpretation> interpretations = new HashSet<Interpretation>();
+  /** The maximum number of interpretations returned by
+   *  {@link #getInterpretations}.
+   */
+  static final int MAX_LISTED_INTERPRETATIONS = 16;
+
+  private final List<Note> notes = new ArrayList<Note>();
+  private final Solution solution;
 
   ValueInterpreter(final MusicList music, final TimeSignature timeSignature) {
     assert timeSignature != null;
-    List<Set<RhythmicPossibility>>
-    candidates = new ArrayList<Set<RhythmicPossibility>>();
     for (Event event : music) {
       if (event instanceof Note) {
         Note note = (Note)event;
-        if (!note.isGrace()) {
-          Set<RhythmicPossibility>
-          candidate = new HashSet<RhythmicPossibility>(2);
-          candidate.add(new Large(note));
-          candidate.add(new Small(note));
-          candidates.add(candidate);
-        }
+        if (!note.isGrace()) notes.add(note);
       } /* FIXME: Handle chords as well */
     }
 
-    if (!candidates.isEmpty()) {
-      interpretations = findInterpretations(candidates, timeSignature);
+    final RhythmSignature rhythm = new RhythmSignature(notes, timeSignature);
+    Solution cached = SOLUTIONS.get(rhythm);
+    if (cached == null) {
+      cached = new Search(rhythm).solve();
+      SOLUTIONS.put(rhythm, cached);
     }
+    solution = cached;
   }
 
-  public Set<Interpretation> getInterpretations() { return interpretations; }
+  /** Returns the number of possible interpretations of the measure.
+   */
+  public long getInterpretationCount() { return solution.count; }
+  /** Returns the possible interpretations, but at most
+   *  {@link #MAX_LISTED_INTERPRETATIONS} of them.
+   */
+  public List<Interpretation> getInterpretations() {
+    List<Interpretation> result =
+      new ArrayList<Interpretation>(solution.listed.size());
+    for (boolean[] large: solution.listed) {
+      Interpretation interpretation = new Interpretation();
+      for (int i = 0; i < large.length; i++) {
+        final Note note = notes.get(i);
+        interpretation.add(large[i]? new Large(note): new Small(note));
+      }
+      result.add(interpretation);
+    }
+    return result;
+  }
 
   /** Determines if the simple distrinction of values sign can be used to
    *  resolve a note value ambiguity.
@@ -82,67 +112,203 @@ class ValueInterpreter {
    * @see freedots.Braille#valueDistinction
    */
   public Object getSplitPoint() {
-    for (Interpretation interpretation: interpretations) {
-      if (interpretation.isCorrect()) {
-        int begin = 0;
-        int end = interpretation.size() - 1;
-
-        if (end > begin) {
-          boolean beginLarge = isWholeToEighth(interpretation.get(begin));
-          boolean endLarge = isWholeToEighth(interpretation.get(end));
-
-          if ((beginLarge && !endLarge) || (!beginLarge && endLarge)) {
-            int leftIndex = begin;
-            while (isWholeToEighth(interpretation.get(leftIndex)) == beginLarge)
-              leftIndex++;
-            int rightIndex = end;
-            while (isWholeToEighth(interpretation.get(rightIndex)) == endLarge)
-              rightIndex--;
-            if (rightIndex == leftIndex - 1) {
-              return interpretation.get(leftIndex).getNote();
-            }
-          }
+    return solution.splitIndex < 0? null: notes.get(solution.splitIndex);
+  }
+
+  private static boolean isWholeToEighth(final int power) {
+    return power <= 0 && power >= AugmentedPowerOfTwo.QUAVER.getPower();
+  }
+
+  /* Rhythms are cached across measures, parts and scores */
+  private static final int MAX_CACHED_SOLUTIONS = 1024;
+  private static final Map<RhythmSignature, Solution> SOLUTIONS =
+    Collections.synchronizedMap(new LinkedHashMap<RhythmSignature, Solution>(
+      16, 0.75f, true) {
+        @Override protected boolean
+        removeEldestEntry(Map.Entry<RhythmSignature, Solution> eldest) {
+          return size() > MAX_CACHED_SOLUTIONS;
         }
+      });
+
+  /** The time signature and the note values of a measure.
+   */
+  private static final class RhythmSignature {
+    private static final int FIELDS = 4;
+    private final int[] values;
+    private final int hashCode;
+
+    RhythmSignature(final List<Note> notes, final TimeSignature time) {
+      values = new int[2 + notes.size() * FIELDS];
+      values[0] = time.numerator();
+      values[1] = time.denominator();
+      for (int i = 0; i < notes.size(); i++) {
+        final AugmentedPowerOfTwo value = notes.get(i).getAugmentedFraction();
+        values[2 + i*FIELDS] = value.getPower();
+        values[3 + i*FIELDS] = value.dots();
+        values[4 + i*FIELDS] = value.normalNotes();
+        values[5 + i*FIELDS] = value.actualNotes();
       }
+      hashCode = Arrays.hashCode(values);
+    }
+    int size() { return (values.length - 2) / FIELDS; }
+    long time() { return PackedFraction.valueOf(values[0], values[1]); }
+    int power(final int index) { return values[2 + index*FIELDS]; }
+    /** Returns the packed value of a note interpreted with another power.
+     */
+    long value(final int index, final int power) {
+      return PackedFraction.valueOf(AugmentedPowerOfTwo.valueOf(
+        new PowerOfTwo(power), values[3 + index*FIELDS],
+        values[4 + index*FIELDS], values[5 + index*FIELDS]));
     }
-    return null;
+
+    @Override public boolean equals(final Object other) {
+      return other instanceof RhythmSignature
+          && Arrays.equals(values, ((RhythmSignature)other).values);
+    }
+    @Override public int hashCode() { return hashCode; }
   }
 
-  private Set<Interpretation>
-  findInterpretations(
-    final List<Set<RhythmicPossibility>> candidates, final Fraction remaining
-  ) {
-    Set<Interpretation> result = new HashSet<Interpretation>();
-    if (candidates.size() == 1) {
-      for (RhythmicPossibility rhythmicPossibility:candidates.get(0)) {
-        if (rhythmicPossibility.equals(remaining)) {
-          Interpretation interpretation = new Interpretation();
-          interpretation.add(rhythmicPossibility);
-          result.add(interpretation);
-        }
+  /** What is known about all measures with a certain rhythm.
+   */
+  private static final class Solution {
+    final long count;
+    final int splitIndex;
+    final List<boolean[]> listed;
+    Solution(final long count, final int splitIndex,
+             final List<boolean[]> listed) {
+      this.count = count;
+      this.splitIndex = splitIndex;
+      this.listed = listed;
+    }
+  }
+
+  /** Counts the ways to fill a measure by choosing the {@link Large} or
+   *  {@link Small} value of each note.
+   */
+  private static final class Search {
+    private final RhythmSignature rhythm;
+    private final int size;
+    private final long[] large, small;
+    /** Bounds of the duration which the notes from an index on can fill */
+    private final long[] minimum, maximum;
+    private final List<Map<Long, Long>> memo;
+
+    Search(final RhythmSignature rhythm) {
+      this.rhythm = rhythm;
+      size = rhythm.size();
+      large = new long[size];
+      small = new long[size];
+      minimum = new long[size + 1];
+      maximum = new long[size + 1];
+      minimum[size] = maximum[size] = PackedFraction.ZERO;
+      memo = new ArrayList<Map<Long, Long>>(size);
+      for (int i = 0; i < size; i++) {
+        large[i] = rhythm.value(i, largePower(rhythm.power(i)));
+        small[i] = rhythm.value(i, smallPower(rhythm.power(i)));
+        memo.add(new HashMap<Long, Long>());
+      }
+      for (int i = size - 1; i >= 0; i--) {
+        final boolean largeIsSmaller = PackedFraction.compare(large[i],
+                                                              small[i]) < 0;
+        minimum[i] = PackedFraction.add(minimum[i + 1],
+                                        largeIsSmaller? large[i]: small[i]);
+        maximum[i] = PackedFraction.add(maximum[i + 1],
+                                        largeIsSmaller? small[i]: large[i]);
+      }
+    }
+
+    Solution solve() {
+      if (size == 0)
+        return new Solution(0, -1, Collections.<boolean[]>emptyList());
+      final long time = rhythm.time();
+      final List<boolean[]> listed = new ArrayList<boolean[]>();
+      list(0, time, new boolean[size], listed);
+      return new Solution(count(0, time), splitIndex(time),
+                          Collections.unmodifiableList(listed));
+    }
+
+    private long count(final int index, final long remaining) {
+      if (index == size) return PackedFraction.isZero(remaining)? 1: 0;
+      if (PackedFraction.compare(remaining, minimum[index]) < 0
+          || PackedFraction.compare(remaining, maximum[index]) > 0)
+        return 0;
+
+      final Map<Long, Long> known = memo.get(index);
+      final Long cached = known.get(remaining);
+      if (cached != null) return cached;
+
+      long result = 0;
+      if (PackedFraction.compare(large[index], remaining) <= 0)
+        result += count(index + 1,
+                        PackedFraction.subtract(remaining, large[index]));
+      if (PackedFraction.compare(small[index], remaining) <= 0)
+        result += count(index + 1,
+                        PackedFraction.subtract(remaining, small[index]));
+      /* Saturate instead of overflowing */
+      if (result < 0) result = Long.MAX_VALUE;
+      known.put(remaining, result);
+      return result;
+    }
+
+    /** Collects interpretations, but only descends into states which
+     *  are known to lead to at least one.
+     */
+    private void list(final int index, final long remaining,
+                      final boolean[] choice, final List<boolean[]> result) {
+      if (result.size() == MAX_LISTED_INTERPRETATIONS) return;
+      if (index == size) {
+        result.add(choice.clone());
+        return;
       }
-    } else {
-      Set<RhythmicPossibility> head = candidates.get(0);
-      List<Set<RhythmicPossibility>>
-      tail = candidates.subList(1, candidates.size());
-      for (RhythmicPossibility rhythmicPossibility: head) {
-        if (rhythmicPossibility.compareTo(remaining) <= 0) {
-          for (Interpretation interpretation
-                 : findInterpretations(tail, remaining
-                                       .subtract(rhythmicPossibility))) {
-            interpretation.add(0, rhythmicPossibility);
-            result.add(interpretation);
+      for (int i = 0; i < 2; i++) {
+        final long value = i == 0? large[index]: small[index];
+        if (PackedFraction.compare(value, remaining) <= 0) {
+          final long rest = PackedFraction.subtract(remaining, value);
+          if (count(index + 1, rest) > 0) {
+            choice[index] = i == 0;
+            list(index + 1, rest, choice, result);
           }
         }
       }
     }
 
-    return result;
+    /** Finds the note before which a value distinction sign resolves the
+     *  ambiguity, based on the interpretation which keeps all values as
+     *  they are written.
+     */
+    private int splitIndex(final long time) {
+      long sum = PackedFraction.ZERO;
+      for (int i = 0; i < size; i++) {
+        final int power = rhythm.power(i);
+        sum = PackedFraction.add(sum, power == largePower(power)
+                                      ? large[i]: small[i]);
+      }
+      if (PackedFraction.compare(sum, time) != 0) return -1;
+
+      final int end = size - 1;
+      if (end > 0) {
+        final boolean beginLarge = isWholeToEighth(rhythm.power(0));
+        final boolean endLarge = isWholeToEighth(rhythm.power(end));
+
+        if (beginLarge != endLarge) {
+          int leftIndex = 0;
+          while (isWholeToEighth(rhythm.power(leftIndex)) == beginLarge)
+            leftIndex++;
+          int rightIndex = end;
+          while (isWholeToEighth(rhythm.power(rightIndex)) == endLarge)
+            rightIndex--;
+          if (rightIndex == leftIndex - 1) return leftIndex;
+        }
+      }
+      return -1;
+    }
   }
 
-  private static boolean isWholeToEighth(RhythmicPossibility item) {
-    return item.getPower() <= 0
-        && item.getPower() >= AugmentedPowerOfTwo.QUAVER.getPower();
+  private static int largePower(final int power) {
+    return power < AugmentedPowerOfTwo.QUAVER.getPower()? power + 4: power;
+  }
+  private static int smallPower(final int power) {
+    return power > AugmentedPowerOfTwo.SEMIQUAVER.getPower()? power - 4: power;
   }
 
   @SuppressWarnings("serial")
@@ -181,13 +347,13 @@ class ValueInterpreter {
   class Large extends RhythmicPossibility {
     Large(final Note note) {
       super(note);
-      if (getPower() < QUAVER.getPower()) setPower(getPower()+4);
+      setPower(largePower(getPower()));
     }
   }
   class Small extends RhythmicPossibility {
     Small(final Note note) {
       super(note);
-      if (getPower() > SEMIQUAVER.getPower()) setPower(getPower()-4);
+      setPower(smallPower(getPower()));
     }
   }
 }
@@ -0,0 +1,191 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+/*
+ * FreeDots -- MusicXML to braille music transcription
+ *
+ * Copyright 2008-2010 Mario Lang  All Rights Reserved.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 3, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details (a copy is included in the LICENSE.txt file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This file is maintained by Mario Lang <mlang@delysid.org>.
+ */
+package freedots.web;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import freedots.Options.Method;
+import freedots.braille.BrailleEncoding;
+import freedots.musicxml.Score;
+
+/** Caches conversion results and parsed scores by the content of the
+ *  submitted MusicXML document.
+ * <p>
+ * Results are evicted least recently used first once their total length
+ * exceeds a limit, parsed scores once there are more than a given number
+ * of them.  All methods are thread-safe.
+ */
+final class ConversionCache {
+  private final int maxResultCharacters;
+  private final int maxScores;
+
+  private final LinkedHashMap<Key, Result> results =
+    new LinkedHashMap<Key, Result>(16, 0.75f, true);
+  private long resultCharacters = 0;
+  private final LinkedHashMap<String, Score> scores =
+    new LinkedHashMap<String, Score>(16, 0.75f, true) {
+      @Override protected boolean
+      removeEldestEntry(final Map.Entry<String, Score> eldest) {
+        return size() > maxScores;
+      }
+    };
+
+  private long resultHits, resultMisses, scoreHits, scoreMisses;
+
+  /** Constructs an empty cache.
+   * @param maxResultCharacters limits the total length of cached results
+   * @param maxScores is the number of parsed scores to keep
+   */
+  ConversionCache(final int maxResultCharacters, final int maxScores) {
+    this.maxResultCharacters = maxResultCharacters;
+    this.maxScores = maxScores;
+  }
+
+  /** Computes the key of a document for {@link #getScore} and
+   *  {@link Key}.
+   * @return the hexadecimal SHA-256 digest of data
+   */
+  static String digest(final byte[] data) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+    final StringBuilder hex = new StringBuilder(64);
+    for (byte b: digest.digest(data)) {
+      hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+      hex.append(Character.forDigit(b & 0xF, 16));
+    }
+    return hex.toString();
+  }
+
+  synchronized Result getResult(final Key key) {
+    final Result result = results.get(key);
+    if (result != null) resultHits++; else resultMisses++;
+    return result;
+  }
+  synchronized void putResult(final Key key, final Result result) {
+    final int length = result.getBraille().length();
+    if (length > maxResultCharacters) return;
+
+    final Result previous = results.put(key, result);
+    if (previous != null) resultCharacters -= previous.getBraille().length();
+    resultCharacters += length;
+    final Iterator<Result> eldest = results.values().iterator();
+    while (resultCharacters > maxResultCharacters) {
+      resultCharacters -= eldest.next().getBraille().length();
+      eldest.remove();
+    }
+  }
+
+  /** Looks up a parsed score.
+   * <p>
+   * Scores are not thread-safe, callers have to synchronize on them
+   * while transcribing.
+   * @param digest identifies the document, see {@link #digest}
+   */
+  synchronized Score getScore(final String digest) {
+    final Score score = scores.get(digest);
+    if (score != null) scoreHits++; else scoreMisses++;
+    return score;
+  }
+  /** Adds a parsed score unless another thread was faster.
+   * @return the score which is cached for digest now
+   */
+  synchronized Score putScore(final String digest, final Score score) {
+    final Score previous = scores.get(digest);
+    if (previous != null) return previous;
+    scores.put(digest, score);
+    return score;
+  }
+
+  synchronized long getResultHits() { return resultHits; }
+  synchronized long getResultMisses() { return resultMisses; }
+  synchronized long getScoreHits() { return scoreHits; }
+  synchronized long getScoreMisses() { return scoreMisses; }
+
+  @Override public synchronized String toString() {
+    return "results: " + results.size() + " (" + resultCharacters
+      + " characters), hits: " + resultHits + ", misses: " + resultMisses
+      + "\nscores: " + scores.size()
+      + ", hits: " + scoreHits + ", misses: " + scoreMisses;
+  }
+
+  /** Identifies a conversion result.
+   */
+  static final class Key {
+    private final String digest;
+    private final int width, height;
+    private final Method method;
+    private final BrailleEncoding encoding;
+
+    Key(final String digest, final int width, final int height,
+        final Method method, final BrailleEncoding encoding) {
+      this.digest = digest;
+      this.width = width;
+      this.height = height;
+      this.method = method;
+      this.encoding = encoding;
+    }
+
+    String getDigest() { return digest; }
+    int getWidth() { return width; }
+    int getHeight() { return height; }
+    Method getMethod() { return method; }
+    BrailleEncoding getEncoding() { return encoding; }
+
+    @Override public boolean equals(final Object other) {
+      if (!(other instanceof Key)) return false;
+      final Key that = (Key)other;
+      return digest.equals(that.digest)
+        && width == that.width && height == that.height
+        && method == that.method && encoding == that.encoding;
+    }
+    @Override public int hashCode() {
+      int hash = digest.hashCode();
+      hash = 31 * hash + width;
+      hash = 31 * hash + height;
+      hash = 31 * hash + method.hashCode();
+      return 31 * hash + encoding.hashCode();
+    }
+  }
+
+  /** A transcription and the title of its score.
+   */
+  static final class Result {
+    private final String title;
+    private final String braille;
+
+    Result(final String title, final String braille) {
+      this.title = title;
+      this.braille = braille;
+    }
+    String getTitle() { return title; }
+    String getBraille() { return braille; }
+  }
+}
@@ -24,13 +24,31 @@ package freedots.web;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.parsers.ParserConfigurationException;
@@ -38,9 +56,11 @@ import javax.xml.xpath.XPathExpressionException;
 
 import org.apache.commons.fileupload.FileItemIterator;
 import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadException;
 import org.apache.commons.fileupload.servlet.ServletFileUpload;
 import org.xml.sax.SAXException;
 
+import freedots.DaemonThreadFactory;
 import freedots.Options;
 import freedots.Options.Method;
 import freedots.braille.BrailleEncoding;
@@ -56,25 +76,89 @@ public class MusicXML2BrailleServlet extends javax.servlet.http.HttpServlet {
   private static final int MIN_COLUMNS_PER_LINE = 8;
   private static final int MAX_COLUMNS_PER_LINE = 88;
 
+  /* Defaults for the init parameters of the same name */
+  private static final int RESULT_CACHE_CHARACTERS = 16 * 1024 * 1024;
+  private static final int SCORE_CACHE_SIZE = 16;
+  private static final int MAX_CONVERSIONS =
+    Runtime.getRuntime().availableProcessors();
+  private static final int CONVERSION_QUEUE_DEPTH = 8;
+  private static final int FETCH_THREADS = 8;
+  private static final int CONVERSION_TIMEOUT_SECONDS = 30;
+  private static final int MAX_INPUT_BYTES = 8 * 1024 * 1024;
+  private static final int RETRY_AFTER_SECONDS = 5;
+
+  private ConversionCache cache;
+  private int resultCacheCharacters;
+
+  /* The stages of a conversion, see Conversion.  The latter two have
+   * maxConversions threads each, their queues are bounded by the
+   * admissions.
+   */
+  private ExecutorService fetches, parses, transcriptions;
+  /* Requests which are reading their input, converting or waiting for a
+   * thread.  Holding a permit while the input is read keeps a burst of
+   * uploads from filling the heap before it can be rejected.
+   */
+  private Semaphore admissions;
+  private int conversionTimeout;
+  private int maxInputBytes;
+  private final AtomicInteger rejected = new AtomicInteger();
+  private final AtomicInteger timedOut = new AtomicInteger();
+
+  @Override public void init() {
+    resultCacheCharacters =
+      getIntParameter("resultCacheCharacters", RESULT_CACHE_CHARACTERS);
+    cache = new ConversionCache(resultCacheCharacters,
+      getIntParameter("scoreCacheSize", SCORE_CACHE_SIZE));
+    final int maxConversions =
+      Math.max(1, getIntParameter("maxConversions", MAX_CONVERSIONS));
+    final int queueDepth = Math.max(0,
+      getIntParameter("conversionQueueDepth", CONVERSION_QUEUE_DEPTH));
+    conversionTimeout = getIntParameter("conversionTimeoutSeconds",
+                                        CONVERSION_TIMEOUT_SECONDS);
+    maxInputBytes = getIntParameter("maxInputBytes", MAX_INPUT_BYTES);
+    final int fetchThreads =
+      Math.max(1, getIntParameter("fetchThreads", FETCH_THREADS));
+    admissions = new Semaphore(fetchThreads + maxConversions + queueDepth);
+    fetches = DaemonThreadFactory.newFixedThreadPool(fetchThreads, "fetch");
+    parses = DaemonThreadFactory.newFixedThreadPool(maxConversions, "parse");
+    transcriptions =
+      DaemonThreadFactory.newFixedThreadPool(maxConversions, "transcription");
+  }
+  @Override public void destroy() {
+    fetches.shutdownNow();
+    parses.shutdownNow();
+    transcriptions.shutdownNow();
+  }
+  private int getIntParameter(final String name, final int defaultValue) {
+    final String value = getInitParameter(name);
+    if (value != null && !value.isEmpty()) {
+      try {
+        return Integer.parseInt(value.trim());
+      } catch (NumberFormatException e) {
+        LOG.info("Not a proper number: "+value+", falling back to default");
+      }
+    }
+    return defaultValue;
+  }
 
   public void doGet(HttpServletRequest req,
                     HttpServletResponse resp) throws IOException {
     String uri = req.getParameter("uri");
     if (uri != null && uri.length() > 0) {
-      URL url = new URL(uri);
-      String extension = "xml";
-      BrailleEncoding brailleEncoding = BrailleEncoding.UnicodeBraille;
-      int width = 40, height = 25;
+      final URL url = new URL(uri);
+      final Conversion conversion = new Conversion(resp);
 
       String ext = uri.substring(uri.length() - 3);
       if (ext.compareTo("mxl") == 0) {
-        extension = ext;
+        conversion.extension = ext;
       }
 
       String encodingParam = req.getParameter("encoding");
       if (encodingParam != null && !encodingParam.isEmpty()) {
         try {
-          brailleEncoding = Enum.valueOf(BrailleEncoding.class, encodingParam);
+          conversion.encoding =
+            Enum.valueOf(BrailleEncoding.class, encodingParam);
         } catch (IllegalArgumentException e) {
           LOG.info("Unknown encoding "+encodingParam+", falling back to default");
         }
@@ -85,7 +169,7 @@ public class MusicXML2BrailleServlet extends javax.servlet.http.HttpServlet {
         try {
           final int value = Integer.parseInt(widthParam);
           if (value >= MIN_COLUMNS_PER_LINE && value <= MAX_COLUMNS_PER_LINE)
-            width = value;
+            conversion.width = value;
         } catch (NumberFormatException e) {
         }
       }
@@ -94,94 +178,357 @@ public class MusicXML2BrailleServlet extends javax.servlet.http.HttpServlet {
         try {
           final int value = Integer.parseInt(heightParam);
           if (value >= MIN_LINES_PER_PAGE && value <= MAX_LINES_PER_PAGE)
-            height = value;
+            conversion.height = value;
         } catch (NumberFormatException e) {
         }
       }
 
-      Score score = parseMusicXML(url.openStream(), extension);
-      if (score != null)
-        writeResult(score, width, height, Method.SectionBySection, brailleEncoding,
-                    resp);
-      else
-        resp.sendError(500);
+      if (!admit(resp)) return;
+      conversion.start(req, new Step() {
+          public void run() throws IOException {
+            /* A remote document may not take longer than the conversion */
+            final URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(conversionTimeout * 1000);
+            connection.setReadTimeout(conversionTimeout * 1000);
+            conversion.data = readAll(connection.getInputStream());
+          }
+        });
+    } else if (req.getParameter("stats") != null) {
+      resp.setHeader("Content-Type", "text/plain; charset=utf-8");
+      resp.getWriter().println(cache);
+      resp.getWriter().println("Conversions: "
+                               + admissions.availablePermits()
+                               + " admissions available, "
+                               + rejected + " rejected, "
+                               + timedOut + " timed out");
     } else {
       LOG.info("Bad URI error");
       resp.sendError(500);
     }
   }
 
-  public void doPost(HttpServletRequest req,
+  public void doPost(final HttpServletRequest req,
                      HttpServletResponse resp) throws IOException {
-    Score score = null;
-    BrailleEncoding brailleEncoding = BrailleEncoding.UnicodeBraille;
-    int width = 40, height = 25;
-    InputStream stream = null;
+    if (!admit(resp)) return;
+    final Conversion conversion = new Conversion(resp);
+    /* The upload is read on the fetch pool as well */
+    conversion.start(req, new Step() {
+        public void run() throws IOException, FileUploadException {
+          upload(req, conversion);
+        }
+      });
+  }
+  private void upload(HttpServletRequest req, Conversion conversion)
+    throws IOException, FileUploadException {
     ServletFileUpload upload = new ServletFileUpload();
+    FileItemIterator iterator = upload.getItemIterator(req);
+    while (iterator.hasNext()) {
+      final FileItemStream item = iterator.next();
+      if (item.getFieldName().compareTo("file.xml") == 0) {
+        if (item.getName().endsWith(".mxl")) conversion.extension = "mxl";
+        /* Parsed once all parameters are known, it might be cached */
+        conversion.data = readAll(item.openStream());
+      } else if (item.getFieldName().compareTo("encoding") == 0) {
+        final BufferedReader reader =
+          new BufferedReader(new InputStreamReader(item.openStream()));
+        final String line = reader.readLine();
+        if (line != null) {
+          try {
+            conversion.encoding = Enum.valueOf(BrailleEncoding.class, line);
+          } catch (IllegalArgumentException e) {
+            LOG.info("Unknown encoding "+line+", falling back to default");
+          }
+        }
+      } else if (item.getFieldName().compareTo("width") == 0) {
+        final BufferedReader reader =
+          new BufferedReader(new InputStreamReader(item.openStream()));
+        final String line = reader.readLine();
+        if (line != null && !line.isEmpty()) {
+          try {
+            final int value = Integer.parseInt(line);
+            if (value >= MIN_COLUMNS_PER_LINE && value <= MAX_COLUMNS_PER_LINE)
+              conversion.width = value;
+          } catch (NumberFormatException e) {
+            LOG.info("Not a proper number: "+line+", falling back to default");
+          }
+        }
+      } else if (item.getFieldName().compareTo("height") == 0) {
+        final BufferedReader reader =
+          new BufferedReader(new InputStreamReader(item.openStream()));
+        final String line = reader.readLine();
+        if (line != null && !line.isEmpty()) {
+          try {
+            final int value = Integer.parseInt(line);
+            if (value >= MIN_LINES_PER_PAGE && value <= MAX_LINES_PER_PAGE)
+              conversion.height = value;
+          } catch (NumberFormatException e) {
+            LOG.info("Not a proper number: "+line+", falling back to default");
+          }
+        }
+      }
+    }
+  }
+
+  /** Takes a permit for a request which is going to convert a document,
+   *  or turns it away right away if too many are already in progress.
+   */
+  private boolean admit(HttpServletResponse resp) throws IOException {
+    if (admissions.tryAcquire()) return true;
+    reject(resp);
+    return false;
+  }
+  private void reject(HttpServletResponse resp) throws IOException {
+    rejected.incrementAndGet();
+    resp.setIntHeader("Retry-After", RETRY_AFTER_SECONDS);
+    resp.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+  }
+
+  @SuppressWarnings("serial")
+  private static final class InputTooLargeException extends IOException {
+    InputTooLargeException(final int limit) {
+      super("Input exceeds " + limit + " bytes");
+    }
+  }
+  private byte[] readAll(final InputStream stream) throws IOException {
     try {
-      FileItemIterator iterator = upload.getItemIterator(req);
-      while (iterator.hasNext()) {
-        final FileItemStream item = iterator.next();
-        if (item.getFieldName().compareTo("file.xml") == 0) {
-          String extension = "xml";
-          if (item.getName().endsWith(".mxl")) extension = "mxl";
-          score = parseMusicXML(item.openStream(), extension);
-        } else if (item.getFieldName().compareTo("encoding") == 0) {
-          final BufferedReader reader =
-            new BufferedReader(new InputStreamReader(item.openStream()));
-          final String line = reader.readLine();
-          if (line != null) {
-            try {
-              brailleEncoding = Enum.valueOf(BrailleEncoding.class, line);
-            } catch (IllegalArgumentException e) {
-              LOG.info("Unknown encoding "+line+", falling back to default");
-            }            
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int count;
+      while ((count = stream.read(buffer)) != -1) {
+        if (bytes.size() + count > maxInputBytes)
+          throw new InputTooLargeException(maxInputBytes);
+        bytes.write(buffer, 0, count);
+      }
+      return bytes.toByteArray();
+    } finally {
+      stream.close();
+    }
+  }
+
+  /** A stage of a conversion. */
+  private interface Step {
+    void run() throws Exception;
+  }
+
+  /** Takes a request through fetching, parsing and transcription.
+   * <p>
+   * Each stage runs on its own pool and submits the next one, so a slow
+   * remote document does not occupy a conversion thread and no stage
+   * blocks a container thread.  Parsing is skipped for cached scores, and
+   * everything but fetching for cached results.  If the request does not
+   * complete within conversionTimeoutSeconds the running stage is
+   * interrupted and the client is asked to retry later, unless the
+   * transcription is already being streamed, which then ends where it is.
+   * <p>
+   * Containers which cannot process a request asynchronously (because of a
+   * filter which does not support it, for instance) get the same stages,
+   * but their thread waits for them.
+   */
+  private final class Conversion implements AsyncListener {
+    private final HttpServletResponse resp;
+    /** Null if the request is processed synchronously. */
+    private AsyncContext context = null;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile Future<?> stage = null;
+    /** Set once the transcription has started writing the response. */
+    private volatile boolean streaming = false;
+
+    /* Filled in from the request and by the fetch stage */
+    private String extension = "xml";
+    private int width = 40, height = 25;
+    private Method method = Method.SectionBySection;
+    private BrailleEncoding encoding = BrailleEncoding.UnicodeBraille;
+    private byte[] data = null;
+
+    private ConversionCache.Key key;
+    private Score score;
+
+    Conversion(final HttpServletResponse resp) { this.resp = resp; }
+
+    /** Starts fetching the document.  Must be called with an admission,
+     *  which is released once the response has been sent.
+     */
+    void start(final HttpServletRequest req, final Step fetch) {
+      if (req.isAsyncSupported()) {
+        context = req.startAsync();
+        context.setTimeout(conversionTimeout * 1000L);
+        context.addListener(this);
+      }
+      submit(fetches, new Step() {
+          public void run() throws Exception {
+            fetch.run();
+            fetched();
           }
-        } else if (item.getFieldName().compareTo("width") == 0) {
-          final BufferedReader reader =
-            new BufferedReader(new InputStreamReader(item.openStream()));
-          final String line = reader.readLine();
-          if (line != null && !line.isEmpty()) {
-            try {
-              final int value = Integer.parseInt(line);
-              if (value >= MIN_COLUMNS_PER_LINE && value <= MAX_COLUMNS_PER_LINE)
-                width = value;
-            } catch (NumberFormatException e) {
-              LOG.info("Not a proper number: "+line+", falling back to default");
-            }
+        });
+      if (context == null) {
+        try {
+          if (!done.await(conversionTimeout, TimeUnit.SECONDS)) {
+            timeout();
+            /* A cancelled transcription stops at its next line */
+            done.await();
           }
-        } else if (item.getFieldName().compareTo("height") == 0) {
-          final BufferedReader reader =
-            new BufferedReader(new InputStreamReader(item.openStream()));
-          final String line = reader.readLine();
-          if (line != null && !line.isEmpty()) {
-            try {
-              final int value = Integer.parseInt(line);
-              if (value >= MIN_LINES_PER_PAGE && value <= MAX_LINES_PER_PAGE)
-                height = value;
-            } catch (NumberFormatException e) {
-              LOG.info("Not a proper number: "+line+", falling back to default");
-            }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          timeout();
+        }
+      }
+    }
+
+    private void fetched() throws IOException {
+      if (data == null) {
+        if (claim()) {
+          try {
+            resp.sendRedirect("/");
+          } finally {
+            complete();
           }
         }
+        return;
+      }
+      key = new ConversionCache.Key(ConversionCache.digest(data),
+                                    width, height, method, encoding);
+      final ConversionCache.Result result = cache.getResult(key);
+      if (result != null) {
+        send(result);
+        return;
+      }
+      score = cache.getScore(key.getDigest());
+      if (score == null) {
+        submit(parses, new Step() {
+            public void run() throws IOException {
+              parse();
+            }
+          });
+      } else {
+        transcribeLater();
+      }
+    }
+    private void parse() throws IOException {
+      final Score parsed =
+        parseMusicXML(new ByteArrayInputStream(data), extension);
+      if (parsed == null) {
+        fail(500);
+        return;
+      }
+      score = cache.putScore(key.getDigest(), parsed);
+      transcribeLater();
+    }
+    private void transcribeLater() {
+      submit(transcriptions, new Step() {
+          public void run() throws IOException {
+            transcribeScore();
+          }
+        });
+    }
+    private void transcribeScore() throws IOException {
+      if (!claim()) return;
+      streaming = true;
+      try {
+        final String title = score.getMovementTitle();
+        final CopyingWriter writer =
+          new CopyingWriter(openResult(title, encoding, resp),
+                            resultCacheCharacters);
+        transcribe(score, width, height, method, encoding, writer);
+        writer.close();
+        final String braille = writer.getCopy();
+        if (braille != null)
+          cache.putResult(key, new ConversionCache.Result(title, braille));
+      } finally {
+        complete();
       }
-    } catch (org.apache.commons.fileupload.FileUploadException e) {
-      LOG.info("FileUploadException error");
-      resp.sendError(500);
     }
 
-    if (score != null) {
-      writeResult(score, width, height, Method.SectionBySection, brailleEncoding,
-                  resp);
-    } else {
-      resp.sendRedirect("/");
+    private void submit(final ExecutorService executor, final Step step) {
+      try {
+        stage = executor.submit(new Runnable() {
+            public void run() {
+              if (finished.get()) return;
+              try {
+                step.run();
+              } catch (InputTooLargeException e) {
+                fail(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+              } catch (CancellationException e) {
+                /* Timed out, the client has been told already */
+              } catch (FileUploadException e) {
+                LOG.info("FileUploadException error");
+                fail(500);
+              } catch (Exception e) {
+                LOG.log(Level.WARNING, "Conversion failed", e);
+                fail(500);
+              }
+            }
+          });
+      } catch (RejectedExecutionException e) {
+        /* The servlet is being destroyed */
+        fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      }
+    }
+
+    /** Makes sure only one of the stages and the timeout responds. */
+    private boolean claim() { return finished.compareAndSet(false, true); }
+    private void complete() {
+      if (context != null) context.complete(); else done.countDown();
+      admissions.release();
+    }
+
+    private void send(ConversionCache.Result result) throws IOException {
+      if (!claim()) return;
+      try {
+        writeResult(result, encoding, resp);
+      } finally {
+        complete();
+      }
+    }
+    private void fail(final int status) {
+      if (!claim()) return;
+      try {
+        resp.sendError(status);
+      } catch (IOException e) {
+        LOG.info("Failed to send error " + status + ": " + e);
+      } finally {
+        complete();
+      }
+    }
+    /** Interrupting makes the transcriber give up at the next line. */
+    private void cancel() {
+      final Future<?> running = stage;
+      if (running != null) running.cancel(true);
     }
+    private void timeout() {
+      if (!claim()) {
+        if (streaming) cancel();
+        return;
+      }
+      timedOut.incrementAndGet();
+      LOG.info("Conversion timed out after " + conversionTimeout + "s");
+      cancel();
+      try {
+        reject(resp);
+      } catch (IOException e) {
+        LOG.info("Failed to reject timed out request: " + e);
+      } finally {
+        complete();
+      }
+    }
+
+    public void onTimeout(AsyncEvent event) { timeout(); }
+    public void onError(AsyncEvent event) {
+      if (!claim()) {
+        if (streaming) cancel();
+        return;
+      }
+      cancel();
+      complete();
+    }
+    public void onComplete(AsyncEvent event) {}
+    public void onStartAsync(AsyncEvent event) {}
   }
 
   private Score parseMusicXML(InputStream stream, String extension) throws IOException {
     Score score = null;
     try {
-      score = new Score(stream, extension);
+      score = new Score(stream, extension, false);
     } catch (XPathExpressionException e) {
       LOG.info("XPathExpressionException error");
     } catch (ParserConfigurationException e) {
@@ -192,43 +539,81 @@ public class MusicXML2BrailleServlet extends javax.servlet.http.HttpServlet {
     return score;
   }
 
-  private void writeResult(Score score,
-                           int width, int height, Method method,
-                           BrailleEncoding encoding,
-                           HttpServletResponse resp) throws IOException {
-    if (score != null) {
-      String[] args = {};
-      Options options = new Options(args);
+  /** Streams the transcription of a score to writer.
+   * <p>
+   * Cached scores are shared by requests with different page sizes, each
+   * of them gets a transcriber of its own.
+   */
+  private void transcribe(Score score, int width, int height,
+                          Method method, BrailleEncoding encoding,
+                          Writer writer) throws IOException {
+    String[] args = {};
+    Options options = new Options(args);
 
-      options.setPageWidth(width);
-      options.setPageHeight(height);
-      options.setMethod(method);
+    options.setPageWidth(width);
+    options.setPageHeight(height);
+    options.setMethod(method);
 
-      final Transcriber transcriber = new Transcriber(options);
-      transcriber.setScore(score);
-      final String result = transcriber.toString(encoding);
+    new Transcriber(options).setScore(score, writer, encoding);
+  }
+
+  private void writeResult(ConversionCache.Result result,
+                           BrailleEncoding encoding,
+                           HttpServletResponse resp) throws IOException {
+    Writer writer = openResult(result.getTitle(), encoding, resp);
+    writer.write(result.getBraille());
+    writer.close();
+  }
+  /** Sets the headers for a result and returns a writer for its body. */
+  private Writer openResult(String title, BrailleEncoding encoding,
+                            HttpServletResponse resp) throws IOException {
+    String filename = "output."+encoding.getExtension();
+    if (title != null && !title.isEmpty())
+      filename = title + "."+encoding.getExtension();
 
-      String title = score.getMovementTitle();
-      String filename = "output."+encoding.getExtension();
-      if (title != null && !title.isEmpty())
-        filename = title + "."+encoding.getExtension();
+    if (encoding == BrailleEncoding.HTML) {
+      resp.setHeader("Content-Type", "text/html; charset=utf-8");
+    } else {
+      resp.setHeader("Content-Type", "application/force-download; name=\""
+                     + filename + "\"");
+      resp.setHeader("Content-Transfer-Encoding", "binary");
+      resp.setHeader("Content-Disposition", "attachment; filename=\""
+                     + filename + "\"");
+    }
+    return new BufferedWriter(new OutputStreamWriter(resp.getOutputStream(),
+                                                     "UTF-8"));
+  }
 
-      if (encoding == BrailleEncoding.HTML) {
-        resp.setHeader("Content-Type", "text/html; charset=utf-8");
-      } else {
-        resp.setHeader("Content-Type", "application/force-download; name=\""
-                       + filename + "\"");
-        resp.setHeader("Content-Transfer-Encoding", "binary");
-        resp.setHeader("Content-Disposition", "attachment; filename=\""
-                       + filename + "\"");
-      }
-      BufferedWriter writer =
-        new BufferedWriter(new OutputStreamWriter(resp.getOutputStream(),
-                                                  "UTF-8"));
+  /** Passes everything through and keeps a copy for the result cache, as
+   *  long as it does not exceed limit characters.
+   */
+  private static final class CopyingWriter extends FilterWriter {
+    private final int limit;
+    private StringBuilder copy = new StringBuilder();
 
-      writer.write(result);
-      writer.flush();
-      writer.close();
+    CopyingWriter(final Writer out, final int limit) {
+      super(out);
+      this.limit = limit;
+    }
+    @Override public void write(int c) throws IOException {
+      out.write(c);
+      if (fits(1)) copy.append((char)c);
+    }
+    @Override public void write(char[] chars, int offset, int length)
+      throws IOException {
+      out.write(chars, offset, length);
+      if (fits(length)) copy.append(chars, offset, length);
+    }
+    @Override public void write(String string, int offset, int length)
+      throws IOException {
+      out.write(string, offset, length);
+      if (fits(length)) copy.append(string, offset, offset + length);
+    }
+    private boolean fits(final int length) {
+      if (copy != null && copy.length() + length > limit) copy = null;
+      return copy != null;
     }
+    /** @return everything written, or null if it did not fit */
+    String getCopy() { return copy == null ? null : copy.toString(); }
   }
 }
@@ -0,0 +1,764 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+
+import freedots.Options;
+import freedots.braille.Sign;
+import freedots.math.AbstractFraction;
+import freedots.math.Fraction;
+import freedots.math.PackedFraction;
+import freedots.music.Event;
+import freedots.music.MusicList;
+import freedots.musicxml.Attributes;
+import freedots.musicxml.ParserPool;
+import freedots.musicxml.Score;
+import freedots.transcription.PageIterator;
+import freedots.transcription.Transcriber;
+
+/** Micro benchmarks for performance critical code paths.
+ * <p>
+ * Run all of them with {@code ant benchmark} or pick some by name with
+ * {@code java -cp build:test Benchmarks musiclist}.
+ */
+public final class Benchmarks {
+  private Benchmarks() {}
+
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) {
+    List<String> names = Arrays.asList(args);
+    if (names.isEmpty() || names.contains("musiclist")) musicList();
+    if (names.isEmpty() || names.contains("projections")) projections();
+    if (names.isEmpty() || names.contains("fraction")) fraction();
+    if (names.isEmpty() || names.contains("transcription")) transcription();
+    if (names.isEmpty() || names.contains("heap")) heap();
+    if (names.isEmpty() || names.contains("values")) valueAmbiguity();
+    if (names.isEmpty() || names.contains("braille")) brailleLookup();
+    if (names.isEmpty() || names.contains("pages")) firstPage();
+    if (names.isEmpty() || names.contains("baroverbar")) barOverBar();
+    if (names.isEmpty() || names.contains("queries")) queries();
+    if (names.isEmpty() || names.contains("attributes")) attributes();
+    if (names.isEmpty() || names.contains("tuplets")) tuplets();
+  }
+
+  /** Runs a task a few times and returns the best time in milliseconds.
+   */
+  private static double best(Runnable task) {
+    long best = Long.MAX_VALUE;
+    for (int round = 0; round < ROUNDS; round++) {
+      final long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1e6;
+  }
+
+  private static Score load(String fileName) {
+    try {
+      return new Score(fileName, false);
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void report(String name, double millis) {
+    System.out.println(String.format("%-40s %10.2f ms", name, millis));
+  }
+
+  /** Returns the number of bytes allocated by the current thread so far,
+   *  or -1 if the JVM does not tell.
+   */
+  private static long allocatedBytes() {
+    java.lang.management.ThreadMXBean bean =
+      java.lang.management.ManagementFactory.getThreadMXBean();
+    if (bean instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean)bean)
+        .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+  private static void reportAllocation(String name, Runnable task) {
+    final long before = allocatedBytes();
+    task.run();
+    final long after = allocatedBytes();
+    if (before >= 0)
+      System.out.println(String.format("%-40s %10d bytes", name,
+                                       after - before));
+  }
+
+  /* --- MusicList --- */
+
+  private static final class SimpleEvent implements Event {
+    private final Fraction moment;
+    SimpleEvent(Fraction moment) { this.moment = moment; }
+    public Fraction getMoment() { return moment; }
+    public boolean equalsIgnoreOffset(Event other) { return true; }
+  }
+
+  /** The list as it was before insertion used binary search.
+   */
+  @SuppressWarnings("serial")
+  private static final class LinearMusicList extends ArrayList<Event> {
+    @Override public boolean add(Event newElement) {
+      final Fraction moment = newElement.getMoment();
+      ListIterator<Event> iterator = listIterator();
+      while (iterator.hasNext())
+        if (iterator.next().getMoment().compareTo(moment) > 0) {
+          iterator.previous();
+          break;
+        }
+      iterator.add(newElement);
+      return true;
+    }
+    List<Event> eventsAt(Fraction moment) {
+      final List<Event> events = new ArrayList<Event>();
+      final Iterator<Event> iterator = iterator();
+      while (iterator.hasNext()) {
+        final Event event = iterator.next();
+        if (event.getMoment().compareTo(moment) < 0) continue;
+        if (event.getMoment().equals(moment)) events.add(event);
+        else break;
+      }
+      return events;
+    }
+  }
+
+  /** Events in the order a four voice part delivers them: every measure
+   *  is filled voice by voice, backing up to the start of the measure.
+   */
+  private static List<Event> partEvents(int measures) {
+    final List<Event> events = new ArrayList<Event>();
+    for (int measure = 0; measure < measures; measure++)
+      for (int voice = 0; voice < 4; voice++)
+        for (int eighth = 0; eighth < 8; eighth++)
+          events.add(new SimpleEvent(new Fraction(measure * 8 + eighth, 8)));
+    return events;
+  }
+
+  private static void musicList() {
+    final List<Event> events = partEvents(400);
+    final Fraction[] probes = new Fraction[1000];
+    for (int i = 0; i < probes.length; i++)
+      probes[i] = new Fraction(i * 3, 8);
+
+    final MusicList indexed = new MusicList();
+    final LinearMusicList linear = new LinearMusicList();
+    report("MusicList.add (" + events.size() + " events)", best(new Runnable() {
+        public void run() {
+          indexed.clear();
+          for (Event event: events) indexed.add(event);
+        }
+      }));
+    report("linear add (" + events.size() + " events)", best(new Runnable() {
+        public void run() {
+          linear.clear();
+          for (Event event: events) linear.add(event);
+        }
+      }));
+    report("MusicList.eventsAt (" + probes.length + " lookups)",
+           best(new Runnable() {
+               public void run() {
+                 for (Fraction moment: probes) indexed.eventsAt(moment);
+               }
+             }));
+    report("linear eventsAt (" + probes.length + " lookups)",
+           best(new Runnable() {
+               public void run() {
+                 for (Fraction moment: probes) linear.eventsAt(moment);
+               }
+             }));
+    if (!indexed.equals(linear))
+      throw new AssertionError("MusicList order differs from linear list");
+  }
+
+  /* --- Staff and voice projections --- */
+
+  private static void projections() {
+    final MusicList music =
+      load("scores/lvb-moonlight-1.xml").getParts().get(0).getMusicList();
+    final int staffCount = music.getStaffCount();
+    final int calls = 100;
+
+    report("getStaff, rebuilt (" + calls * staffCount + " calls)",
+           best(new Runnable() {
+               public void run() {
+                 /* A fresh copy has no cached projections */
+                 for (int i = 0; i < calls; i++)
+                   for (int staff = 0; staff < staffCount; staff++)
+                     ((MusicList)music.clone()).getStaff(staff);
+               }
+             }));
+    final long hits = MusicList.getProjectionHits();
+    final long misses = MusicList.getProjectionMisses();
+    report("getStaff, cached (" + calls * staffCount + " calls)",
+           best(new Runnable() {
+               public void run() {
+                 for (int i = 0; i < calls; i++)
+                   for (int staff = 0; staff < staffCount; staff++)
+                     music.getStaff(staff);
+               }
+             }));
+    final long cachedHits = MusicList.getProjectionHits() - hits;
+    final long cachedMisses = MusicList.getProjectionMisses() - misses;
+    System.out.println(String.format("%-40s %10.1f %%", "cache hit rate",
+                                     100.0 * cachedHits
+                                     / (cachedHits + cachedMisses)));
+  }
+
+  /* --- Fraction arithmetic --- */
+
+  /** Keeps results alive so that the JIT can not drop the computation.
+   */
+  private static volatile long sink;
+
+  private static void fraction() {
+    /* Durations of a measure full of triplet sixteenths and dotted notes */
+    final int[][] durations = { {1, 24}, {1, 24}, {1, 24}, {3, 16},
+                                {1, 16}, {1, 12}, {1, 8}, {3, 32} };
+    final Fraction[] boxed = new Fraction[durations.length];
+    final long[] packed = new long[durations.length];
+    for (int i = 0; i < durations.length; i++) {
+      boxed[i] = new Fraction(durations[i][0], durations[i][1]);
+      packed[i] = PackedFraction.valueOf(boxed[i]);
+    }
+    final int count = 1000000;
+
+    final Runnable boxedLoop = new Runnable() {
+        public void run() {
+          AbstractFraction offset = Fraction.ZERO;
+          AbstractFraction maximum = Fraction.ZERO;
+          for (int i = 0; i < count; i++) {
+            if (i % 64 == 0) offset = Fraction.ZERO;
+            offset = offset.add(boxed[i % boxed.length]);
+            if (offset.compareTo(maximum) > 0) maximum = offset;
+          }
+          sink = maximum.numerator();
+        }
+      };
+    final Runnable packedLoop = new Runnable() {
+        public void run() {
+          long offset = PackedFraction.ZERO;
+          long maximum = PackedFraction.ZERO;
+          for (int i = 0; i < count; i++) {
+            if (i % 64 == 0) offset = PackedFraction.ZERO;
+            offset = PackedFraction.add(offset, packed[i % packed.length]);
+            if (PackedFraction.compare(offset, maximum) > 0) maximum = offset;
+          }
+          sink = maximum;
+        }
+      };
+    report("Fraction add/compare (" + count + " ops)", best(boxedLoop));
+    report("PackedFraction add/compare (" + count + " ops)",
+           best(packedLoop));
+    reportAllocation("Fraction allocation", boxedLoop);
+    reportAllocation("PackedFraction allocation", packedLoop);
+  }
+
+  /* --- Transcription --- */
+
+  private static void transcription() {
+    final String fileName = "scores/lvb-moonlight-1.xml";
+    final Options options;
+    try {
+      options = new Options(new String[] { "-w", "40" });
+    } catch (java.io.FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    final Runnable task = new Runnable() {
+        public void run() {
+          Transcriber transcriber = new Transcriber(options);
+          transcriber.setScore(load(fileName));
+          sink = transcriber.toString().length();
+        }
+      };
+    report("Transcription of " + fileName, best(task));
+    reportAllocation("Transcription allocation", task);
+  }
+
+  /** Returns the size of the heap which is still in use after collecting
+   *  garbage.
+   */
+  private static long usedHeap() {
+    final Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 5; i++) {
+      System.gc();
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  /** Reports the heap a loaded score keeps alive, with its complete
+   *  document and with the tree the streaming loader builds.
+   */
+  private static void heap() {
+    final String fileName = "scores/lvb-moonlight-1.xml";
+    final int copies = 8;
+    for (boolean preserveDocument: new boolean[] { true, false }) {
+      final Score[] scores = new Score[copies];
+      try {
+        new Score(fileName, preserveDocument);
+        final long before = usedHeap();
+        for (int i = 0; i < copies; i++)
+          scores[i] = new Score(fileName, preserveDocument);
+        final long retained = (usedHeap() - before) / copies;
+        System.out.println(String.format(
+          "%-40s %10d bytes", "Retained heap, "
+          + (preserveDocument? "document": "streaming"), retained));
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+      sink = scores.length;
+    }
+  }
+
+  /* --- Value ambiguity --- */
+
+  /** Appends a measure which consists of notes of a single type.
+   */
+  private static void measure(StringBuilder xml, int number,
+                              int beats, int beatType,
+                              int notes, int duration, String type) {
+    xml.append("<measure number=\"").append(number).append("\">");
+    xml.append("<attributes><divisions>16</divisions>"
+               + "<time><beats>").append(beats).append("</beats><beat-type>")
+      .append(beatType).append("</beat-type></time></attributes>");
+    for (int i = 0; i < notes; i++) {
+      xml.append("<note><pitch><step>C</step><octave>5</octave></pitch>"
+                 + "<duration>").append(duration).append("</duration>"
+                 + "<voice>1</voice><type>").append(type).append("</type>"
+                 + "</note>");
+    }
+    xml.append("</measure>");
+  }
+
+  /** Transcribes measures which have lots of possible value
+   *  interpretations to check.
+   */
+  private static void valueAmbiguity() {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<score-partwise version=\"2.0\"><part-list>"
+               + "<score-part id=\"P1\"><part-name>Worst case</part-name>"
+               + "</score-part></part-list><part id=\"P1\">");
+    int number = 1;
+    for (int i = 0; i < 4; i++) {
+      measure(xml, number++, 20, 8, 20, 8, "eighth");
+      measure(xml, number++, 4, 4, 64, 1, "64th");
+      measure(xml, number++, 4, 4, 32, 2, "32nd");
+    }
+    xml.append("</part></score-partwise>");
+
+    final java.io.File file = ScoreFiles.write(xml.toString());
+    final Options options;
+    try {
+      options = new Options(new String[] { "-w", "40" });
+    } catch (java.io.FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    final Score score = load(file.getPath());
+    report("Ambiguous measures (" + (number - 1) + ")", best(new Runnable() {
+        public void run() {
+          Transcriber transcriber = new Transcriber(options);
+          transcriber.setScore(score);
+          sink = transcriber.toString().length();
+        }
+      }));
+  }
+
+  /* --- Braille lookups --- */
+
+  /** Simulates caret movement over a transcribed score.
+   */
+  private static void brailleLookup() {
+    final Transcriber transcriber;
+    try {
+      transcriber = new Transcriber(new Options(new String[] { "-w", "40" }));
+    } catch (java.io.FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    transcriber.setScore(load("scores/lvb-moonlight-1.xml"));
+    final CharSequence braille = transcriber.getSigns();
+    final int length = braille.length();
+    final int count = 2000;
+    final int calls = 20;
+    report("Sign and char lookups (" + count + " of " + length + ")",
+           best(new Runnable() {
+               public void run() {
+                 long sum = 0;
+                 for (int i = 0; i < count; i++) {
+                   final int index = (int)((long)i * 7919 % length);
+                   final Sign sign = transcriber.getSignAtIndex(index);
+                   if (sign != null) sum += sign.length();
+                   sum += braille.charAt(index);
+                   sum += braille.length();
+                 }
+                 sink = sum;
+               }
+             }));
+
+    final List<Object> objects = new ArrayList<Object>();
+    for (int index = 0; index < length; index++) {
+      final Object object = transcriber.getScoreObjectAtIndex(index);
+      if (object != null) objects.add(object);
+    }
+    report("Score object searches (" + objects.size() + ")",
+           best(new Runnable() {
+               public void run() {
+                 long sum = 0;
+                 for (Object object: objects)
+                   sum += transcriber.getIndexOfScoreObject(object);
+                 sink = sum;
+               }
+             }));
+    report("Score object lookups (" + objects.size() + ")",
+           best(new Runnable() {
+               public void run() {
+                 long sum = 0;
+                 for (Object object: objects)
+                   sum += transcriber.lookupIndexOfScoreObject(object);
+                 sink = sum;
+               }
+             }));
+  }
+
+  /* --- Incremental transcription --- */
+
+  private static void firstPage() {
+    final String fileName = "scores/lvb-moonlight-1.xml";
+    final Options options;
+    try {
+      options = new Options(new String[] { "-w", "40" });
+    } catch (java.io.FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+    final Score score = load(fileName);
+    report("First page of " + fileName, best(new Runnable() {
+        public void run() {
+          PageIterator pages = new Transcriber(options).pages(score);
+          sink = pages.next().length();
+          pages.close();
+        }
+      }));
+    report("All pages of " + fileName, best(new Runnable() {
+        public void run() {
+          PageIterator pages = new Transcriber(options).pages(score);
+          long length = 0;
+          while (pages.hasNext()) length += pages.next().length();
+          sink = length;
+        }
+      }));
+  }
+
+  /* --- Bar over bar --- */
+
+  /** Returns a score which repeats all measures of a single part score.
+   */
+  private static java.io.File repeatMeasures(String fileName, int times) {
+    final String xml;
+    try {
+      java.io.InputStream in = new java.io.FileInputStream(fileName);
+      try {
+        java.io.ByteArrayOutputStream bytes =
+          new java.io.ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) > 0;) bytes.write(buffer, 0, n);
+        xml = bytes.toString("UTF-8");
+      } finally {
+        in.close();
+      }
+    } catch (java.io.IOException e) {
+      throw new RuntimeException(e);
+    }
+    final int begin = xml.indexOf('>', xml.indexOf("<part ")) + 1;
+    final int end = xml.lastIndexOf("</part>");
+    StringBuilder result = new StringBuilder(xml.substring(0, begin));
+    for (int i = 0; i < times; i++) result.append(xml, begin, end);
+    return ScoreFiles.write(result.append(xml.substring(end)).toString());
+  }
+
+  private static void barOverBar() {
+    final String fileName = "scores/bwv988-aria.xml";
+    for (int times: new int[] { 1, 4, 16 }) {
+      final Score score = load(times == 1? fileName
+                               : repeatMeasures(fileName, times).getPath());
+      for (final boolean parallel: new boolean[] { false, true }) {
+        final Options options;
+        try {
+          options = new Options(new String[] { "-w", "40", "-bob" });
+        } catch (java.io.FileNotFoundException e) {
+          throw new RuntimeException(e);
+        }
+        options.setParallelTranscription(parallel);
+        report("Bar over bar, " + (times * 32) + " measures"
+               + (parallel? ", parallel": ""), best(new Runnable() {
+            public void run() {
+              Transcriber transcriber = new Transcriber(options);
+              transcriber.setScore(score);
+              sink = transcriber.toString().length();
+            }
+          }));
+      }
+    }
+  }
+
+  /* --- Document queries --- */
+
+  private static org.w3c.dom.Document parse(String fileName) {
+    try {
+      javax.xml.parsers.DocumentBuilder builder =
+        ParserPool.getDefault().acquire();
+      try {
+        return builder.parse(new java.io.File(fileName));
+      } finally {
+        ParserPool.getDefault().release(builder);
+      }
+    } catch (Exception e) {
+      throw new RuntimeException(e);
+    }
+  }
+  private static int evaluate(String expression, Object item) {
+    try {
+      return ((org.w3c.dom.NodeList)ParserPool.newXPath()
+              .evaluate(expression, item,
+                        javax.xml.xpath.XPathConstants.NODESET)).getLength();
+    } catch (javax.xml.xpath.XPathExpressionException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Compares the queries as they used to be done on every call with
+   *  tree walks and the values cached by Score and Part.
+   */
+  private static void queries() {
+    final String fileName = "scores/lvb-moonlight-1.xml";
+    final org.w3c.dom.Document document = parse(fileName);
+    final Score score = load(fileName);
+    final int count = 2000;
+    final int calls = 20;
+
+    final org.w3c.dom.NodeList partElements =
+      document.getElementsByTagName("part");
+    report("divisions, XPath (" + calls + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < calls; i++)
+            for (int p = 0; p < partElements.getLength(); p++)
+              sum += evaluate(".//attributes/divisions/text()",
+                              partElements.item(p));
+          sink = sum;
+        }
+      }));
+    report("divisions, walk (" + calls + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < calls; i++)
+            for (int p = 0; p < partElements.getLength(); p++)
+              for (org.w3c.dom.Node measure = partElements.item(p)
+                     .getFirstChild(); measure != null;
+                   measure = measure.getNextSibling())
+                for (org.w3c.dom.Node node = measure.getFirstChild();
+                     node != null; node = node.getNextSibling())
+                  if ("attributes".equals(node.getNodeName()))
+                    for (org.w3c.dom.Node child = node.getFirstChild();
+                         child != null; child = child.getNextSibling())
+                      if ("divisions".equals(child.getNodeName())) sum++;
+          sink = sum;
+        }
+      }));
+
+    final org.w3c.dom.Element encoding = (org.w3c.dom.Element)
+      document.getElementsByTagName("encoding").item(0);
+    final int lookups = 100 * count;
+    report("encoding supports, walk (" + lookups + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < lookups; i++) {
+            for (org.w3c.dom.Node node = encoding.getFirstChild();
+                 node != null; node = node.getNextSibling()) {
+              if ("supports".equals(node.getNodeName())
+                  && "accidental".equals(((org.w3c.dom.Element)node)
+                                         .getAttribute("element"))) {
+                sum++;
+                break;
+              }
+            }
+          }
+          sink = sum;
+        }
+      }));
+    report("encoding supports, cached (" + lookups + ")",
+           best(new Runnable() {
+               public void run() {
+                 long sum = 0;
+                 for (int i = 0; i < lookups; i++)
+                   if (score.encodingSupports("accidental")) sum++;
+                 sink = sum;
+               }
+             }));
+
+    final String midiFileName = "scores/bwv1013-1.xml";
+    final org.w3c.dom.Document midiDocument = parse(midiFileName);
+    freedots.musicxml.Note firstNote = null;
+    for (Event event: load(midiFileName).getParts().get(0).getMusicList())
+      if (firstNote == null && event instanceof freedots.musicxml.Note)
+        firstNote = (freedots.musicxml.Note)event;
+    final freedots.musicxml.Note note = firstNote;
+    final org.w3c.dom.Element scorePart = (org.w3c.dom.Element)
+      midiDocument.getElementsByTagName("score-part").item(0);
+    report("MIDI channel, DOM lookup (" + lookups + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < lookups; i++) {
+            org.w3c.dom.Element instrument = (org.w3c.dom.Element)
+              scorePart.getElementsByTagName("midi-instrument").item(0);
+            sum += Integer.parseInt(instrument
+                                    .getElementsByTagName("midi-channel")
+                                    .item(0).getTextContent()) - 1;
+          }
+          sink = sum;
+        }
+      }));
+    report("MIDI channel, cached (" + lookups + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < lookups; i++)
+            sum += note.getMidiChannel();
+          sink = sum;
+        }
+      }));
+
+    final org.w3c.dom.Document icon = parse("icons/G_CLEF.xml");
+    report("icon rows, XPath per call (" + count + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < count; i++)
+            sum += evaluate("//icon/bitmap/row", icon);
+          sink = sum;
+        }
+      }));
+    report("icon rows, walk (" + count + ")", best(new Runnable() {
+        public void run() {
+          long sum = 0;
+          for (int i = 0; i < count; i++) {
+            for (org.w3c.dom.Node bitmap = icon.getDocumentElement()
+                   .getFirstChild(); bitmap != null;
+                 bitmap = bitmap.getNextSibling()) {
+              if (!"bitmap".equals(bitmap.getNodeName())) continue;
+              for (org.w3c.dom.Node row = bitmap.getFirstChild();
+                   row != null; row = row.getNextSibling())
+                if ("row".equals(row.getNodeName())) sum++;
+            }
+          }
+          sink = sum;
+        }
+      }));
+  }
+
+  /* --- Attributes --- */
+
+  /** Reads all attributes elements of the corpus, once with a subtree scan
+   *  per accessor as Attributes used to do and once in a single pass.
+   */
+  private static void attributes() {
+    final List<org.w3c.dom.Element> elements =
+      new ArrayList<org.w3c.dom.Element>();
+    final java.io.File[] files = new java.io.File("scores").listFiles();
+    Arrays.sort(files);
+    for (java.io.File file: files) {
+      if (!file.getName().endsWith(".xml")) continue;
+      final org.w3c.dom.NodeList nodeList;
+      try {
+        nodeList = parse(file.getPath()).getElementsByTagName("attributes");
+      } catch (RuntimeException e) {
+        continue; /* DTD not available offline */
+      }
+      for (int i = 0; i < nodeList.getLength(); i++)
+        elements.add((org.w3c.dom.Element)nodeList.item(i));
+    }
+    final String[] names = { "divisions", "staves", "clef", "time", "key",
+                             "beats", "beat-type", "fifths", "sign", "line" };
+    final int rounds = 1000;
+    report("attributes, scan per accessor ("
+           + rounds * elements.size() + ")",
+           best(new Runnable() {
+               public void run() {
+                 long sum = 0;
+                 for (int round = 0; round < rounds; round++)
+                   for (org.w3c.dom.Element element: elements)
+                     for (String name: names)
+                       sum += element.getElementsByTagName(name).getLength();
+                 sink = sum;
+               }
+             }));
+    report("attributes, single pass (" + rounds * elements.size() + ")",
+           best(new Runnable() {
+               public void run() {
+                 long sum = 0;
+                 for (int round = 0; round < rounds; round++)
+                   for (org.w3c.dom.Element element: elements) {
+                     Attributes attributes = new Attributes(element);
+                     sum += attributes.getDivisions() + attributes.getStaves()
+                       + attributes.getClefs().size()
+                       + attributes.getKeys().size();
+                   }
+                 sink = sum;
+               }
+             }));
+  }
+
+  /* --- Tuplets and slurs --- */
+
+  /** Loads scores with one long measure of triplets in four voices, with
+   *  a slur over every voice.
+   */
+  private static void tuplets() {
+    for (int beats: new int[] { 256, 1024 }) tuplets(beats, 1, 4);
+  }
+  private static void tuplets(int beats, int measures, int voices) {
+    StringBuilder xml = new StringBuilder();
+    xml.append("<score-partwise version=\"2.0\"><part-list>"
+               + "<score-part id=\"P1\"><part-name>Triplets</part-name>"
+               + "</score-part></part-list><part id=\"P1\">");
+    for (int measure = 1; measure <= measures; measure++) {
+      xml.append("<measure number=\"").append(measure).append("\">");
+      if (measure == 1)
+        xml.append("<attributes><divisions>3</divisions><time><beats>")
+          .append(beats).append("</beats><beat-type>4</beat-type></time>"
+                                + "</attributes>");
+      for (int voice = 1; voice <= voices; voice++) {
+        if (voice > 1)
+          xml.append("<backup><duration>").append(beats * 3)
+            .append("</duration></backup>");
+        for (int i = 0; i < beats * 3; i++) {
+          xml.append("<note><pitch><step>C</step><octave>").append(voice + 2)
+            .append("</octave></pitch><duration>1</duration><voice>")
+            .append(voice).append("</voice><type>eighth</type>"
+                                  + "<time-modification><actual-notes>3"
+                                  + "</actual-notes><normal-notes>2"
+                                  + "</normal-notes></time-modification>");
+          if (i == 0 || i == beats * 3 - 1)
+            xml.append("<notations><slur type=\"")
+              .append(i == 0? "start": "stop").append("\" number=\"")
+              .append(voice).append("\"/></notations>");
+          xml.append("</note>");
+        }
+      }
+      xml.append("</measure>");
+    }
+    xml.append("</part></score-partwise>");
+    final String fileName = ScoreFiles.write(xml.toString()).getPath();
+    report("Tuplets, " + measures * voices * beats * 3 + " notes",
+           best(new Runnable() {
+               public void run() {
+                 sink = load(fileName).getParts().size();
+               }
+             }));
+  }
+}
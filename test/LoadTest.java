@@ -0,0 +1,215 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/** Drives a running conversion servlet with the scores of the corpus.
+ * <p>
+ * Start the web application (for instance with {@code ant gae.run}) and
+ * run {@code ant loadtest} or
+ * {@code java -cp test LoadTest [-get] URL [CLIENTS [REQUESTS]]}.
+ * Every client uploads the files in {@code scores/} one after the other,
+ * with changing page widths so that most requests miss the conversion
+ * cache.  With {@code -get} the scores are served by a local HTTP server
+ * instead, and the servlet is asked to fetch them by URI.
+ * With more clients than the servlet admits, the report should show
+ * excess requests turned away with 503 quickly while the latency of
+ * successful conversions stays about the same.
+ */
+public final class LoadTest {
+  private LoadTest() {}
+
+  private static final String BOUNDARY = "freedots-load-test";
+
+  private static final Map<Integer, List<Long>> LATENCIES =
+    new TreeMap<Integer, List<Long>>();
+
+  public static void main(String[] args) throws Exception {
+    final boolean get = args.length > 0 && args[0].equals("-get");
+    if (get) args = Arrays.copyOfRange(args, 1, args.length);
+    if (args.length < 1) {
+      System.err.println("Usage: LoadTest [-get] URL [CLIENTS [REQUESTS]]");
+      System.exit(1);
+    }
+    final URL url = new URL(args[0]);
+    final int clients = args.length > 1? Integer.parseInt(args[1]): 32;
+    final int requests = args.length > 2? Integer.parseInt(args[2]): 10;
+
+    final File[] files = new File("scores").listFiles(new FilenameFilter() {
+        public boolean accept(File directory, String name) {
+          return name.endsWith(".xml") || name.endsWith(".mxl");
+        }
+      });
+    Arrays.sort(files);
+    final byte[][] contents = new byte[files.length][];
+    for (int i = 0; i < files.length; i++) contents[i] = readAll(files[i]);
+    final String scores = get? serve(files, contents): null;
+
+    final ExecutorService pool = Executors.newFixedThreadPool(clients);
+    final long start = System.nanoTime();
+    for (int client = 0; client < clients; client++) {
+      final int first = client * requests;
+      pool.execute(new Runnable() {
+          public void run() {
+            for (int i = first; i < first + requests; i++) {
+              final int file = i % files.length;
+              final int width = 20 + (i / files.length) % 60;
+              final long begin = System.nanoTime();
+              final int status = get
+                ? get(url, scores + files[file].getName(), width)
+                : post(url, files[file].getName(), contents[file], width);
+              record(status, (System.nanoTime() - begin) / 1000000);
+            }
+          }
+        });
+    }
+    pool.shutdown();
+    pool.awaitTermination(1, TimeUnit.HOURS);
+    if (server != null) server.stop(0);
+    final double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.println(clients + " clients, " + clients * requests
+                       + " requests in " + String.format("%.1f", seconds)
+                       + "s");
+    for (Map.Entry<Integer, List<Long>> entry: LATENCIES.entrySet()) {
+      final List<Long> latencies = entry.getValue();
+      Collections.sort(latencies);
+      System.out.println(String.format(
+        "%4s: %5d requests, %5.1f/s, ms p50 %6d p90 %6d p99 %6d max %6d",
+        entry.getKey() < 0? "fail": entry.getKey().toString(),
+        latencies.size(), latencies.size() / seconds,
+        percentile(latencies, 50), percentile(latencies, 90),
+        percentile(latencies, 99), latencies.get(latencies.size() - 1)));
+    }
+  }
+
+  private static synchronized void record(int status, long milliseconds) {
+    List<Long> latencies = LATENCIES.get(status);
+    if (latencies == null)
+      LATENCIES.put(status, latencies = new ArrayList<Long>());
+    latencies.add(milliseconds);
+  }
+  private static long percentile(List<Long> sorted, int percent) {
+    return sorted.get((sorted.size() - 1) * percent / 100);
+  }
+
+  private static HttpServer server = null;
+  /** Serves the scores on a free local port.
+   * @return the URL the file names have to be appended to
+   */
+  private static String serve(final File[] files, final byte[][] contents)
+    throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 64);
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.createContext("/scores/", new HttpHandler() {
+        public void handle(HttpExchange exchange) throws IOException {
+          final String path = exchange.getRequestURI().getPath();
+          final String name = path.substring(path.lastIndexOf('/') + 1);
+          int file = files.length - 1;
+          while (file >= 0 && !files[file].getName().equals(name)) file--;
+          if (file < 0) {
+            exchange.sendResponseHeaders(404, -1);
+          } else {
+            exchange.sendResponseHeaders(200, contents[file].length);
+            exchange.getResponseBody().write(contents[file]);
+          }
+          exchange.close();
+        }
+      });
+    server.start();
+    return "http://localhost:" + server.getAddress().getPort() + "/scores/";
+  }
+
+  /** Asks the servlet to fetch and convert a score.
+   * @return the HTTP status code, or -1 if the connection failed
+   */
+  private static int get(URL url, String uri, int width) {
+    try {
+      final HttpURLConnection connection = (HttpURLConnection)
+        new URL(url + "?uri=" + URLEncoder.encode(uri, "UTF-8")
+                + "&width=" + width).openConnection();
+      return respond(connection);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /** Uploads a score like the submission form does.
+   * @return the HTTP status code, or -1 if the connection failed
+   */
+  private static int post(URL url, String name, byte[] content, int width) {
+    try {
+      final HttpURLConnection connection =
+        (HttpURLConnection)url.openConnection();
+      connection.setDoOutput(true);
+      connection.setRequestMethod("POST");
+      connection.setRequestProperty("Content-Type",
+                                    "multipart/form-data; boundary="
+                                    + BOUNDARY);
+      final OutputStream out = connection.getOutputStream();
+      try {
+        out.write(("--" + BOUNDARY + "\r\n"
+                   + "Content-Disposition: form-data; name=\"width\"\r\n\r\n"
+                   + width + "\r\n"
+                   + "--" + BOUNDARY + "\r\n"
+                   + "Content-Disposition: form-data; name=\"file.xml\"; "
+                   + "filename=\"" + name + "\"\r\n"
+                   + "Content-Type: application/octet-stream\r\n\r\n")
+                  .getBytes("UTF-8"));
+        out.write(content);
+        out.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes("UTF-8"));
+      } finally {
+        out.close();
+      }
+      return respond(connection);
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+  private static int respond(HttpURLConnection connection)
+    throws IOException {
+    final int status = connection.getResponseCode();
+    final InputStream in = status < 400? connection.getInputStream()
+                                       : connection.getErrorStream();
+    if (in != null) readAll(in);
+    return status;
+  }
+
+  private static byte[] readAll(File file) throws IOException {
+    return readAll(new FileInputStream(file));
+  }
+  private static byte[] readAll(InputStream stream) throws IOException {
+    try {
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[8192];
+      int count;
+      while ((count = stream.read(buffer)) != -1)
+        bytes.write(buffer, 0, count);
+      return bytes.toByteArray();
+    } finally {
+      stream.close();
+    }
+  }
+}
@@ -0,0 +1,33 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/** Writes scores which tests and benchmarks generate to temporary files.
+ */
+final class ScoreFiles {
+  private ScoreFiles() {}
+
+  /** Writes a generated score to a temporary file.
+   * @return the file, which is deleted when the virtual machine exits
+   */
+  static File write(String xml) {
+    try {
+      File file = File.createTempFile("freedots", ".xml");
+      file.deleteOnExit();
+      Writer writer =
+        new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try {
+        writer.write(xml);
+      } finally {
+        writer.close();
+      }
+      return file;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -4,6 +4,8 @@ import freedots.Braille;
 import freedots.music.Fingering;
 
 import freedots.braille.BrailleFingering;
+import freedots.braille.BrailleList;
+import freedots.braille.Text;
 
 public class TestBraille extends junit.framework.TestCase {
   public void testFingering() {
@@ -13,4 +15,33 @@ public class TestBraille extends junit.framework.TestCase {
 
     assertEquals("1st finger", new BrailleFingering(fingering).toString(), "⠁");
   }
+
+  private static void assertConsistent(BrailleList list) {
+    final String string = list.toString();
+    assertEquals(string.length(), list.length());
+    for (int i = 0; i < string.length(); i++) {
+      assertEquals(string.charAt(i), list.charAt(i));
+      assertEquals(string.charAt(i),
+                   list.getSignAtIndex(i).toString().charAt(0));
+    }
+    assertNull(list.getSignAtIndex(string.length()));
+  }
+  public void testNestedListOffsets() {
+    BrailleList root = new BrailleList();
+    BrailleList inner = new BrailleList();
+    root.add(new Text("a"));
+    root.add(inner);
+    root.add(new BrailleList());
+    root.add(new Text("z"));
+    assertConsistent(root);
+
+    /* Modifications of a child have to be seen by its parent */
+    inner.add(new Text("b"));
+    inner.add(new Text("c"));
+    assertConsistent(root);
+    assertEquals("abcz", root.toString());
+    inner.removeFirst();
+    assertConsistent(root);
+    assertEquals(-1, root.getIndexOfScoreObject("none"));
+  }
 }
@@ -0,0 +1,104 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import freedots.Options;
+import freedots.musicxml.Score;
+import freedots.transcription.Transcriber;
+
+/** Loads compressed MusicXML from files and streams.
+ */
+public class TestCompressedMusicXML extends junit.framework.TestCase {
+  private static final String SCORE = "scores/bwv847-p.xml";
+  private static final String[] ROOT_FILES = {
+    "music/score.xml", "score.musicxml"
+  };
+
+  private static byte[] container(String rootFile) throws Exception {
+    return ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<container><rootfiles>"
+            + "<rootfile full-path=\"" + rootFile + "\"/>"
+            + "</rootfiles></container>\n").getBytes("UTF-8");
+  }
+
+  private static byte[] readAll(InputStream stream) throws Exception {
+    final java.io.ByteArrayOutputStream bytes =
+      new java.io.ByteArrayOutputStream();
+    final byte[] buffer = new byte[8192];
+    int count;
+    while ((count = stream.read(buffer)) != -1) bytes.write(buffer, 0, count);
+    stream.close();
+    return bytes.toByteArray();
+  }
+  private static void put(ZipOutputStream zip, String name, byte[] content)
+    throws Exception {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(content);
+    zip.closeEntry();
+  }
+  /** Writes an archive with a decoy score and an image besides the root
+   *  file, optionally with the container at the end.
+   */
+  private static File archive(boolean containerFirst, String rootFile)
+    throws Exception {
+    final File file = File.createTempFile("freedots", ".mxl");
+    file.deleteOnExit();
+    final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+    final byte[] container = container(rootFile);
+    if (containerFirst) put(zip, "META-INF/container.xml", container);
+    put(zip, "music/cover.png", new byte[] { (byte)0x89, 'P', 'N', 'G' });
+    put(zip, "music/other.xml",
+        readAll(new FileInputStream("test/pmia-1.xml")));
+    put(zip, rootFile, readAll(new FileInputStream(SCORE)));
+    if (!containerFirst) put(zip, "META-INF/container.xml", container);
+    zip.close();
+    return file;
+  }
+
+  private static String transcribe(Score score) throws Exception {
+    final Transcriber transcriber =
+      new Transcriber(new Options(new String[] { "-w", "40" }));
+    transcriber.setScore(score);
+    return transcriber.toString();
+  }
+
+  public void testSameAsUncompressed() throws Exception {
+    final String expected = transcribe(new Score(SCORE, false));
+    for (String rootFile: ROOT_FILES) {
+      for (boolean containerFirst: new boolean[] { true, false }) {
+        final File file = archive(containerFirst, rootFile);
+        assertEquals("file", expected, transcribe(new Score(file.getPath())));
+        assertEquals("file", expected,
+                     transcribe(new Score(file.getPath(), false)));
+        assertEquals(rootFile, expected,
+                     transcribe(new Score(new FileInputStream(file), "mxl")));
+        assertEquals(rootFile, expected,
+                     transcribe(new Score(new FileInputStream(file), "mxl",
+                                          false)));
+      }
+    }
+  }
+
+  public void testMissingRootFile() throws Exception {
+    final File file = File.createTempFile("freedots", ".mxl");
+    file.deleteOnExit();
+    final ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+    put(zip, "META-INF/container.xml", container(ROOT_FILES[0]));
+    zip.close();
+    try {
+      new Score(file.getPath());
+      fail("Expected an IOException");
+    } catch (java.io.IOException e) {
+    }
+    try {
+      new Score(new FileInputStream(file), "mxl");
+      fail("Expected an IOException");
+    } catch (java.io.IOException e) {
+    }
+  }
+}
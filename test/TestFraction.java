@@ -0,0 +1,126 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import freedots.math.Fraction;
+
+/** Cross-checks Fraction arithmetic against exact BigInteger results.
+ */
+public class TestFraction extends junit.framework.TestCase {
+  private static final BigInteger INT_MAX =
+    BigInteger.valueOf(Integer.MAX_VALUE);
+
+  private final Random random = new Random(4711);
+
+  /** Picks small values most of the time, but also values which make
+   *  int products overflow.
+   */
+  private int nextInt(boolean nonZero) {
+    int value;
+    do {
+      switch (random.nextInt(4)) {
+      case 0: value = random.nextInt(33) - 16; break;
+      case 1: value = 1 << random.nextInt(31); break;
+      case 2: value = random.nextInt(1 << 20) - (1 << 19); break;
+      default: value = random.nextInt(); break;
+      }
+    } while (nonZero && value == 0);
+    return value;
+  }
+  private Fraction nextFraction() {
+    return new Fraction(nextInt(false), nextInt(true));
+  }
+
+  private static BigInteger[] exact(Fraction fraction) {
+    return new BigInteger[] { BigInteger.valueOf(fraction.numerator()),
+                              BigInteger.valueOf(fraction.denominator()) };
+  }
+
+  /** Verifies result against the exact value n/d, or that an exception
+   *  was only raised because n/d really does not fit into a Fraction.
+   */
+  private static void check(String operation, BigInteger n, BigInteger d,
+                            Fraction result, ArithmeticException exception) {
+    final BigInteger gcd = n.gcd(d);
+    final BigInteger reducedN = n.divide(gcd).abs();
+    final BigInteger reducedD = d.divide(gcd).abs();
+    if (exception != null) {
+      assertTrue(operation + " = " + n + "/" + d + " fits into a Fraction",
+                 reducedN.compareTo(INT_MAX) > 0
+                 || reducedD.compareTo(INT_MAX) > 0);
+    } else {
+      assertEquals(operation + " = " + n + "/" + d + " but got " + result,
+                   n.multiply(BigInteger.valueOf(result.denominator())),
+                   d.multiply(BigInteger.valueOf(result.numerator())));
+      assertEquals(operation + ": " + result + " is not reduced",
+                   BigInteger.ONE,
+                   BigInteger.valueOf(result.numerator())
+                   .gcd(BigInteger.valueOf(result.denominator())));
+    }
+  }
+
+  public void testAgainstBigInteger() {
+    for (int i = 0; i < 20000; i++) {
+      final Fraction a = nextFraction(), b = nextFraction();
+      final BigInteger[] x = exact(a), y = exact(b);
+
+      Fraction result = null;
+      ArithmeticException exception = null;
+      try { result = a.add(b); } catch (ArithmeticException e) {
+        exception = e;
+      }
+      check(a + " + " + b,
+            x[0].multiply(y[1]).add(y[0].multiply(x[1])), x[1].multiply(y[1]),
+            result, exception);
+
+      result = null; exception = null;
+      try { result = a.subtract(b); } catch (ArithmeticException e) {
+        exception = e;
+      }
+      check(a + " - " + b,
+            x[0].multiply(y[1]).subtract(y[0].multiply(x[1])),
+            x[1].multiply(y[1]), result, exception);
+
+      result = null; exception = null;
+      try { result = a.multiply(b); } catch (ArithmeticException e) {
+        exception = e;
+      }
+      check(a + " * " + b, x[0].multiply(y[0]), x[1].multiply(y[1]),
+            result, exception);
+
+      if (b.numerator() != 0) {
+        result = null; exception = null;
+        try { result = a.divide(b); } catch (ArithmeticException e) {
+          exception = e;
+        }
+        check(a + " / " + b, x[0].multiply(y[1]), x[1].multiply(y[0]),
+              result, exception);
+      }
+    }
+  }
+
+  public void testSmallValuesUnchanged() {
+    assertEquals(new Fraction(5, 12),
+                 new Fraction(1, 4).add(new Fraction(1, 6)));
+    assertEquals(new Fraction(1, 12),
+                 new Fraction(1, 4).subtract(new Fraction(1, 6)));
+    assertEquals(new Fraction(3, 2),
+                 new Fraction(3, 8).divide(new Fraction(1, 4)));
+  }
+
+  public void testNoSilentOverflow() {
+    /* ad*bd overflows int although the sum is representable */
+    Fraction tiny = new Fraction(1, 1 << 16);
+    assertEquals(new Fraction(1, 1 << 15), tiny.add(tiny));
+    assertEquals(Fraction.ZERO, tiny.subtract(tiny));
+  }
+
+  public void testValueOfSharesSmallValues() {
+    assertSame(Fraction.valueOf(3, 8), Fraction.valueOf(3, 8));
+    assertSame(Fraction.valueOf(3, 8),
+               new Fraction(1, 4).add(new Fraction(1, 8)));
+    assertEquals(new Fraction(-1, 3), Fraction.valueOf(-1, 3));
+    assertEquals(new Fraction(1, 1 << 20), Fraction.valueOf(1, 1 << 20));
+  }
+}
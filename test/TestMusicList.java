@@ -0,0 +1,40 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import freedots.math.Fraction;
+import freedots.music.EndBar;
+import freedots.music.Event;
+import freedots.music.MusicList;
+
+public class TestMusicList extends junit.framework.TestCase {
+  private static Event event(int numerator, int denominator) {
+    return new EndBar(new Fraction(numerator, denominator));
+  }
+
+  public void testInsertAfterEqualMoments() {
+    MusicList list = new MusicList();
+    Event a = event(1, 4), b = event(0, 1);
+    Event c = event(1, 4), d = event(1, 4);
+    list.add(a); list.add(b); list.add(c); list.add(d);
+    assertSame(b, list.get(0));
+    assertSame(a, list.get(1));
+    assertSame(c, list.get(2));
+    assertSame(d, list.get(3));
+
+    MusicList events = list.eventsAt(new Fraction(1, 4));
+    assertEquals(3, events.size());
+    assertSame(a, events.get(0));
+    assertEquals(0, list.eventsAt(new Fraction(1, 8)).size());
+  }
+
+  public void testExplicitPositions() {
+    MusicList list = new MusicList();
+    Event late = event(1, 1), early = event(0, 1);
+    list.add(late);
+    list.add(0, late);
+    list.add(2, early);
+    Event middle = event(1, 2);
+    list.add(middle);
+    assertSame(middle, list.get(0));
+    assertEquals(2, list.eventsAt(new Fraction(1, 1)).size());
+  }
+}
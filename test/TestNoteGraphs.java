@@ -0,0 +1,239 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import freedots.music.Event;
+import freedots.music.TupletElement;
+import freedots.musicxml.Chord;
+import freedots.musicxml.Note;
+import freedots.musicxml.Part;
+import freedots.musicxml.Score;
+import freedots.musicxml.Slur;
+import freedots.musicxml.Tuplet;
+
+/** Checks that the tuplets and slurs Part links notes with stay the same.
+ * <p>
+ * Every score is reduced to a description of its tuplet trees and slurs in
+ * terms of note positions.  The expected descriptions in
+ * test/notegraphs.txt were taken with the builders which rescanned all
+ * notes for every lookup.
+ */
+public class TestNoteGraphs extends junit.framework.TestCase {
+  private static final String GENERATED = "generated triplets";
+  /** The descriptions of all scores, one section per score */
+  private static final String DESCRIPTIONS = "test/notegraphs.txt";
+  /** File, number of tuplets, number of slurs */
+  private static final String[][] EXPECTED = {
+    { "scores/autumn_leaves.xml", "0", "0" },
+    { "scores/blue_and_sentimental.xml", "0", "0" },
+    { "scores/bwv1013-1.xml", "0", "105" },
+    { "scores/bwv1013-2.xml", "0", "1" },
+    { "scores/bwv1013-3.xml", "0", "0" },
+    { "scores/bwv1013-4.xml", "0", "0" },
+    { "scores/bwv847-p.xml", "0", "6" },
+    { "scores/bwv988-1.xml", "0", "0" },
+    { "scores/bwv988-aria.xml", "0", "22" },
+    { "scores/bwv999.xml", "0", "0" },
+    { "scores/lvb-moonlight-1.xml", "269", "41" },
+    { "test/23d-Tuplets-Nested.xml", "1", "0" },
+    { "test/NestedTupletA.xml", "2", "3" },
+    { "test/harmony-nc.xml", "0", "0" },
+    { "test/intervals.xml", "0", "0" },
+    { "test/pmia-1.xml", "0", "1" },
+    { "test/valueambiguity-1.xml", "0", "2" },
+    { GENERATED, "44", "12" }
+  };
+
+  /** Reads the expected descriptions.
+   * <p>
+   * Every section starts with a line "== " followed by the name of the
+   * score, lines starting with "#" are comments.
+   */
+  private static Map<String, String> readDescriptions() throws IOException {
+    final Map<String, String> result = new HashMap<String, String>();
+    final BufferedReader reader = new BufferedReader(new InputStreamReader(
+      new FileInputStream(DESCRIPTIONS), "UTF-8"));
+    try {
+      String name = null;
+      StringBuilder description = null;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (line.startsWith("#")) continue;
+        if (line.startsWith("== ")) {
+          if (name != null) result.put(name, description.toString());
+          name = line.substring(3);
+          description = new StringBuilder();
+        } else {
+          description.append(line).append('\n');
+        }
+      }
+      if (name != null) result.put(name, description.toString());
+    } finally {
+      reader.close();
+    }
+    return result;
+  }
+
+  public void testScores() throws Exception {
+    final Map<String, String> descriptions = readDescriptions();
+    for (String[] expected: EXPECTED) {
+      final Score score = new Score(expected[0].equals(GENERATED)
+                                    ? generatedScore().getPath()
+                                    : expected[0]);
+      final List<Object> tuplets = new ArrayList<Object>();
+      final List<Object> slurs = new ArrayList<Object>();
+      final String description = describe(score, tuplets, slurs);
+      assertEquals(expected[0] + " tuplets",
+                   expected[1], String.valueOf(tuplets.size()));
+      assertEquals(expected[0] + " slurs",
+                   expected[2], String.valueOf(slurs.size()));
+      assertEquals(expected[0], descriptions.get(expected[0]), description);
+    }
+  }
+
+  /** Appends a note of voice 1 or 2 in triplet time.
+   */
+  private static void note(StringBuilder xml, int voice, boolean chord,
+                           String tuplet, String slur, int slurNumber) {
+    xml.append("<note>").append(chord? "<chord/>": "")
+      .append("<pitch><step>").append(chord? 'E': 'C')
+      .append("</step><octave>").append(6 - voice)
+      .append("</octave></pitch><duration>").append(voice == 1? 4: 8)
+      .append("</duration><voice>").append(voice).append("</voice><type>")
+      .append(voice == 1? "eighth": "quarter")
+      .append("</type><time-modification><actual-notes>3</actual-notes>"
+              + "<normal-notes>2</normal-notes></time-modification>");
+    if (tuplet != null || slur != null) {
+      xml.append("<notations>");
+      if (tuplet != null)
+        xml.append("<tuplet type=\"").append(tuplet).append("\"/>");
+      if (slur != null)
+        xml.append("<slur type=\"").append(slur).append("\" number=\"")
+          .append(slurNumber).append("\"/>");
+      xml.append("</notations>");
+    }
+    xml.append("</note>");
+  }
+  private static void triplet(StringBuilder xml, boolean tupletElements,
+                              String firstSlur, String lastSlur) {
+    note(xml, 1, false, tupletElements? "start": null, firstSlur, 1);
+    note(xml, 1, false, null, null, 1);
+    note(xml, 1, false, tupletElements? "stop": null, lastSlur, 1);
+  }
+  private static void move(StringBuilder xml, String direction, int duration) {
+    xml.append('<').append(direction).append("><duration>").append(duration)
+      .append("</duration>").append(direction.equals("forward")
+                                    ? "<voice>1</voice>": "")
+      .append("</").append(direction).append('>');
+  }
+
+  /** Writes a score with two voices of triplets, with and without tuplet
+   *  elements, partly out of order, with chords and crossing slurs.
+   */
+  private static File generatedScore() {
+    final StringBuilder xml = new StringBuilder(
+      "<score-partwise version=\"2.0\"><part-list><score-part id=\"P1\">"
+      + "<part-name>Triplets</part-name></score-part></part-list>"
+      + "<part id=\"P1\">");
+    for (int measure = 1; measure <= 8; measure++) {
+      xml.append("<measure number=\"").append(measure).append("\">");
+      if (measure == 1)
+        xml.append("<attributes><divisions>12</divisions><time><beats>4"
+                   + "</beats><beat-type>4</beat-type></time></attributes>");
+      if (measure % 2 == 1) {
+        triplet(xml, true, "start", null);
+        triplet(xml, true, null, null);
+        xml.append("<note><pitch><step>G</step><octave>5</octave></pitch>"
+                   + "<duration>12</duration><voice>1</voice>"
+                   + "<type>quarter</type></note>");
+        triplet(xml, false, null, "stop");
+      } else {
+        move(xml, "forward", 24);
+        triplet(xml, false, null, null);
+        triplet(xml, false, null, "stop");
+        move(xml, "backup", 48);
+        triplet(xml, false, "start", null);
+        triplet(xml, false, null, null);
+        move(xml, "forward", 24);
+      }
+      move(xml, "backup", 48);
+      for (int i = 0; i < 6; i++) {
+        note(xml, 2, false, measure % 3 == 0 && i % 3 == 0? "start"
+             : measure % 3 == 0 && i % 3 == 2? "stop": null,
+             i == 0? "start": i == 2? "continue": i == 4? "stop": null, 2);
+        if (i == 1) note(xml, 2, true, null, null, 2);
+      }
+      xml.append("</measure>");
+    }
+    xml.append("</part></score-partwise>");
+    return ScoreFiles.write(xml.toString());
+  }
+
+  /** Describes the tuplet trees and slurs of all parts of a score.
+   * @param tuplets receives the distinct top level tuplets
+   * @param slurs receives the distinct slurs
+   */
+  static String describe(Score score, List<Object> tuplets,
+                         List<Object> slurs) {
+    final StringBuilder result = new StringBuilder();
+    for (Part part: score.getParts()) {
+      final Map<Note, Integer> positions =
+        new IdentityHashMap<Note, Integer>();
+      final List<Note> notes = new ArrayList<Note>();
+      for (Event event: part.getMusicList()) {
+        if (event instanceof Note) notes.add((Note)event);
+        else if (event instanceof Chord) notes.addAll((Chord)event);
+      }
+      for (Note note: notes) positions.put(note, positions.size());
+
+      final Map<Object, Object> seen = new IdentityHashMap<Object, Object>();
+      for (Note note: notes) {
+        if (note.getTuplet() != null) {
+          freedots.music.Tuplet root = note.getTuplet();
+          while (root.getParent() != null) root = root.getParent();
+          if (!seen.containsKey(root)) {
+            seen.put(root, root);
+            tuplets.add(root);
+            describe(root, positions, result);
+            result.append('\n');
+          }
+        }
+        for (Slur slur: note.getSlurs()) {
+          if (!seen.containsKey(slur)) {
+            seen.put(slur, slur);
+            slurs.add(slur);
+            result.append("slur");
+            for (Note slurred: slur)
+              result.append(' ').append(positions.get(slurred));
+            result.append('\n');
+          }
+        }
+      }
+      result.append("--\n");
+    }
+    return result.toString();
+  }
+  private static void describe(freedots.music.Tuplet tuplet,
+                               Map<Note, Integer> positions,
+                               StringBuilder result) {
+    result.append('(').append(tuplet.getActualType())
+      .append(':').append(tuplet.getNormalType());
+    for (TupletElement element: tuplet) {
+      result.append(' ');
+      if (element instanceof Tuplet)
+        describe((Tuplet)element, positions, result);
+      else
+        result.append(positions.get(element));
+    }
+    result.append(')');
+  }
+}
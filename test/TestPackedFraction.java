@@ -0,0 +1,39 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import freedots.math.Fraction;
+import freedots.math.PackedFraction;
+
+public class TestPackedFraction extends junit.framework.TestCase {
+  private static final int[] VALUES = { -7, -3, -1, 0, 1, 2, 3, 4, 6, 12, 32 };
+
+  private static void assertSameFraction(Fraction expected, long actual) {
+    assertEquals(expected, PackedFraction.toFraction(actual));
+  }
+
+  public void testAgreesWithFraction() {
+    for (int an: VALUES) for (int ad: VALUES) if (ad != 0)
+      for (int bn: VALUES) for (int bd: VALUES) if (bd != 0) {
+        Fraction a = new Fraction(an, ad), b = new Fraction(bn, bd);
+        long pa = PackedFraction.valueOf(a), pb = PackedFraction.valueOf(b);
+
+        assertSameFraction(a.add(b), PackedFraction.add(pa, pb));
+        assertSameFraction(a.subtract(b), PackedFraction.subtract(pa, pb));
+        assertSameFraction(a.multiply(b), PackedFraction.multiply(pa, pb));
+        if (bn != 0)
+          assertSameFraction(a.divide(b), PackedFraction.divide(pa, pb));
+        /* Fraction.compareTo orders 0/-1 before 0/1, compare is exact */
+        double da = a.doubleValue(), db = b.doubleValue();
+        assertEquals(da < db? -1: (da == db? 0: 1),
+                     Integer.signum(PackedFraction.compare(pa, pb)));
+      }
+  }
+
+  public void testOverflow() {
+    long big = PackedFraction.valueOf(1, Integer.MAX_VALUE);
+    try {
+      PackedFraction.add(big, PackedFraction.valueOf(1, 3));
+      fail("Expected an ArithmeticException");
+    } catch (ArithmeticException e) {
+    }
+  }
+}
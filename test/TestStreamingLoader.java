@@ -0,0 +1,74 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sound.midi.MidiSystem;
+
+import freedots.Options;
+import freedots.musicxml.MIDISequence;
+import freedots.musicxml.Score;
+import freedots.transcription.Transcriber;
+
+/** Checks that scores loaded with the streaming loader transcribe and
+ *  play exactly like scores loaded with their complete document.
+ */
+public class TestStreamingLoader extends junit.framework.TestCase {
+  /** These refer to DTDs which are only available online */
+  private static final List<String> NEEDS_NETWORK =
+    Arrays.asList("bwv1013.xml", "TupletsWithoutTupletElement.xml");
+  private static final String[][] OPTIONS = {
+    { "-w", "40" }, { "-w", "32", "-bob" }
+  };
+
+  private static List<String> corpus() {
+    final List<String> result = new ArrayList<String>();
+    for (String directory: new String[] { "scores", "test" }) {
+      final String[] names = new File(directory).list();
+      Arrays.sort(names);
+      for (String name: names)
+        if (name.endsWith(".xml") && !NEEDS_NETWORK.contains(name))
+          result.add(directory + File.separator + name);
+    }
+    return result;
+  }
+
+  private static String transcribe(Score score, String[] args)
+    throws Exception {
+    final Transcriber transcriber = new Transcriber(new Options(args));
+    transcriber.setScore(score);
+    return transcriber.toString();
+  }
+  private static byte[] midi(Score score) throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    MidiSystem.write(new MIDISequence(score), 1, bytes);
+    return bytes.toByteArray();
+  }
+
+  public void testSameResults() throws Exception {
+    final List<String> corpus = corpus();
+    assertTrue(corpus.size() > 10);
+    for (String fileName: corpus) {
+      final Score document = new Score(fileName, true);
+      final Score streamed = new Score(fileName, false);
+      for (String[] args: OPTIONS)
+        assertEquals(fileName + " " + Arrays.asList(args),
+                     transcribe(document, args), transcribe(streamed, args));
+      assertTrue(fileName + " MIDI",
+                 Arrays.equals(midi(document), midi(streamed)));
+    }
+  }
+  /** Prefixed attributes like xlink:href are only declared by the DTD */
+  public void testLinks() throws Exception {
+    final String fileName = "test/links.xml";
+    assertTrue(corpus().contains(fileName.replace('/', File.separatorChar)));
+    final Score document = new Score(fileName, true);
+    final Score streamed = new Score(fileName, false);
+    assertEquals(document.getParts().size(), streamed.getParts().size());
+    assertEquals(transcribe(document, OPTIONS[0]),
+                 transcribe(streamed, OPTIONS[0]));
+  }
+}
@@ -2,7 +2,9 @@
 
 import freedots.Braille;
 import freedots.Options;
+import freedots.braille.BrailleEncoding;
 import freedots.musicxml.Score;
+import freedots.transcription.PageIterator;
 import freedots.transcription.Transcriber;
 
 public class TestTranscription extends junit.framework.TestCase {
@@ -90,4 +92,152 @@ public class TestTranscription extends junit.framework.TestCase {
       + NL;
     assertEquals(mxmlFile, transcriber.toString(), expectedResult);
   }
+  public void testScoreObjectIndex()
+    throws javax.xml.parsers.ParserConfigurationException,
+           java.io.IOException,
+           org.xml.sax.SAXException,
+           javax.xml.xpath.XPathExpressionException {
+    Options options = new Options(new String[] { "-w", "40" });
+    Score score = new Score("test/pmia-1.xml");
+    Transcriber transcriber = new Transcriber(options);
+    transcriber.setScore(score);
+
+    final int length = transcriber.toString().length();
+    int objects = 0;
+    for (int index = 0; index < length; index++) {
+      final Object object = transcriber.getScoreObjectAtIndex(index);
+      if (object != null) {
+        objects++;
+        assertEquals(transcriber.getIndexOfScoreObject(object),
+                     transcriber.lookupIndexOfScoreObject(object));
+      }
+    }
+    assertTrue(objects > 0);
+    assertEquals(-1, transcriber.lookupIndexOfScoreObject(score));
+  }
+  public void testStreamingOutput()
+    throws javax.xml.parsers.ParserConfigurationException,
+           java.io.IOException,
+           org.xml.sax.SAXException,
+           javax.xml.xpath.XPathExpressionException {
+    final String[] args = { "-w", "32", "-h", "5" };
+    for (BrailleEncoding encoding: BrailleEncoding.values()) {
+      Transcriber transcriber = new Transcriber(new Options(args));
+      transcriber.setScore(new Score("test/intervals.xml"));
+
+      java.io.StringWriter writer = new java.io.StringWriter();
+      Transcriber streaming = new Transcriber(new Options(args));
+      streaming.setScore(new Score("test/intervals.xml"), writer, encoding);
+      assertEquals(encoding.toString(),
+                   transcriber.toString(encoding), writer.toString());
+    }
+  }
+  /** The expected markup was produced by the former DOM serializer. */
+  public void testHTMLOutput()
+    throws javax.xml.parsers.ParserConfigurationException,
+           java.io.IOException,
+           org.xml.sax.SAXException,
+           javax.xml.xpath.XPathExpressionException {
+    Transcriber transcriber =
+      new Transcriber(new Options(new String[] { "-w", "40" }));
+    transcriber.setScore(new Score("test/intervals.xml"));
+
+    java.io.Reader reader = new java.io.InputStreamReader(
+      new java.io.FileInputStream("test/intervals.html"), "UTF-8");
+    StringBuilder expected = new StringBuilder();
+    try {
+      char[] buffer = new char[4096];
+      int count;
+      while ((count = reader.read(buffer)) != -1)
+        expected.append(buffer, 0, count);
+    } finally {
+      reader.close();
+    }
+    assertEquals(expected.toString().replace("\n", NL),
+                 transcriber.toString(BrailleEncoding.HTML));
+  }
+  public void testPages()
+    throws InterruptedException,
+           javax.xml.parsers.ParserConfigurationException,
+           java.io.IOException,
+           org.xml.sax.SAXException,
+           javax.xml.xpath.XPathExpressionException {
+    final String[] args = { "-w", "32", "-h", "2" };
+    Transcriber transcriber = new Transcriber(new Options(args));
+    transcriber.setScore(new Score("test/intervals.xml"));
+
+    Transcriber paging = new Transcriber(new Options(args));
+    PageIterator pages = paging.pages(new Score("test/intervals.xml"));
+    StringBuilder result = new StringBuilder();
+    int count = 0;
+    while (pages.hasNext()) {
+      result.append(pages.next());
+      count++;
+    }
+    assertTrue(count > 1);
+    assertEquals(transcriber.toString(), result.toString());
+    assertEquals(transcriber.toString(), paging.toString());
+
+    /* Abandoning a transcription must not block */
+    pages = new Transcriber(new Options(args))
+      .pages(new Score("test/intervals.xml"));
+    assertTrue(pages.hasNext());
+    pages.next();
+    pages.close();
+    assertFalse(pages.hasNext());
+
+    /* The thread is only started for the first page, and an abandoned
+     * transcription ends it once the iterator has been collected */
+    pages = new Transcriber(new Options(args))
+      .pages(new Score("test/intervals.xml"));
+    for (int i = 0; i < 50 && pageThreads() > 0; i++) Thread.sleep(100);
+    assertEquals(0, pageThreads());
+    pages.next();
+    assertEquals(1, pageThreads());
+    pages = null;
+    for (int i = 0; i < 100 && pageThreads() > 0; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    assertEquals(0, pageThreads());
+  }
+  private static int pageThreads() {
+    int count = 0;
+    for (Thread thread: Thread.getAllStackTraces().keySet())
+      if (thread.getName().equals("freedots-pages") && thread.isAlive())
+        count++;
+    return count;
+  }
+  public void testParallelTranscription()
+    throws javax.xml.parsers.ParserConfigurationException,
+           java.io.IOException,
+           org.xml.sax.SAXException,
+           javax.xml.xpath.XPathExpressionException {
+    java.io.File[] files = new java.io.File("scores").listFiles();
+    java.util.Arrays.sort(files);
+    int count = 0;
+    for (java.io.File file: files) {
+      /* Opus documents only refer to other scores */
+      if (!file.getName().endsWith(".xml")
+          || file.getName().equals("bwv1013.xml")) continue;
+
+      final String[][] methods = { { "-w", "32", "-h", "12" },
+                                   { "-w", "40", "-bob" } };
+      for (String[] args: methods) {
+        Options options = new Options(args);
+        options.setParallelTranscription(false);
+        Transcriber sequential = new Transcriber(options);
+        sequential.setScore(new Score(file.getPath(), false));
+
+        Transcriber parallel = new Transcriber(new Options(args));
+        Score score = new Score(file.getPath(), false);
+        assertTrue(score.hasIndependentParts());
+        parallel.setScore(score);
+        assertEquals(file.getName(),
+                     sequential.toString(), parallel.toString());
+      }
+      count++;
+    }
+    assertTrue(count > 0);
+  }
 }
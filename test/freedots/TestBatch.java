@@ -0,0 +1,118 @@
+/* -*- c-basic-offset: 2; indent-tabs-mode: nil; -*- */
+package freedots;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TestBatch extends junit.framework.TestCase {
+  private File directory;
+
+  @Override protected void setUp() throws IOException {
+    directory = File.createTempFile("freedots", "");
+    assertTrue(directory.delete() && directory.mkdir());
+    for (String name: new String[] { "b.xml", "a.mxl", "notes.txt" })
+      write(new File(directory, name), "");
+    assertTrue(new File(directory, "folder.xml").mkdir());
+  }
+  @Override protected void tearDown() { delete(directory); }
+
+  private static void write(File file, String text) throws IOException {
+    final Writer writer =
+      new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(text);
+    } finally {
+      writer.close();
+    }
+  }
+  private static String read(File file) throws IOException {
+    final Reader reader =
+      new InputStreamReader(new FileInputStream(file), "UTF-8");
+    try {
+      final StringBuilder text = new StringBuilder();
+      final char[] buffer = new char[4096];
+      int count;
+      while ((count = reader.read(buffer)) != -1)
+        text.append(buffer, 0, count);
+      return text.toString();
+    } finally {
+      reader.close();
+    }
+  }
+  private static void delete(File file) {
+    final File[] files = file.listFiles();
+    if (files != null) for (File child: files) delete(child);
+    file.delete();
+  }
+  private List<String> expand(String location) throws IOException {
+    final List<String> inputs = new ArrayList<String>();
+    Batch.expand(location, inputs);
+    return inputs;
+  }
+  private String path(String name) {
+    return new File(directory, name).getPath();
+  }
+
+  public void testDirectory() throws IOException {
+    assertEquals(Arrays.asList(path("a.mxl"), path("b.xml")),
+                 expand(directory.getPath()));
+  }
+  public void testPattern() throws IOException {
+    assertEquals(Arrays.asList(path("b.xml"), path("folder.xml")),
+                 expand(path("*.xml")));
+    assertEquals(Arrays.asList(path("a.mxl")), expand(path("?.mxl")));
+    assertEquals(Arrays.asList(), expand(path("*.mid")));
+  }
+  public void testListFile() throws IOException {
+    final File list = new File(directory, "list");
+    write(list, "# scores\n\n" + directory.getPath() + "\n"
+          + "  http://example.org/c.xml  \n");
+    assertEquals(Arrays.asList(path("a.mxl"), path("b.xml"),
+                               "http://example.org/c.xml"),
+                 expand("@" + list.getPath()));
+  }
+  public void testOutputName() {
+    final Set<String> names = new HashSet<String>();
+    assertEquals("a", Batch.outputName("scores/a.xml", names));
+    assertEquals("a-2", Batch.outputName("other/a.mxl", names));
+    assertEquals("a-3", Batch.outputName("http://example.org/a.xml", names));
+    assertEquals("b", Batch.outputName("C:\\scores\\b.xml", names));
+    assertEquals("score", Batch.outputName("scores/", names));
+    assertEquals("score-2", Batch.outputName("", names));
+    assertEquals(".hidden", Batch.outputName(".hidden", names));
+  }
+  public void testFailuresLeaveNoOutput() throws Exception {
+    write(new File(directory, "broken.xml"), "<score-partwise>");
+    final Options options = new Options(new String[] {
+      "-batch", directory.getPath(), "-midi",
+      "test/intervals.xml", path("broken.xml")
+    });
+    assertEquals(1, new Batch(options).run());
+    assertTrue(new File(directory, "intervals.txt").isFile());
+    assertTrue(new File(directory, "intervals.mid").isFile());
+    assertFalse(new File(directory, "broken.txt").exists());
+    assertFalse(new File(directory, "broken.mid").exists());
+  }
+  public void testScoreNamedReport() throws Exception {
+    final File input = new File(directory, "input");
+    assertTrue(input.mkdir());
+    final File score = new File(input, "report.xml");
+    write(score, read(new File("test/intervals.xml")));
+    assertEquals(0, new Batch(new Options(new String[] {
+      "-batch", directory.getPath(), score.getPath()
+    })).run());
+    assertTrue(read(new File(directory, "report.txt")).startsWith("OK\t"));
+    assertTrue(read(new File(directory, "report-2.txt")).length() > 0);
+  }
+}